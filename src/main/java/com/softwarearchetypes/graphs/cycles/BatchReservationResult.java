@@ -1,22 +1,30 @@
 package com.softwarearchetypes.graphs.cycles;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
-record BatchReservationResult(Status status, List<ReservationChangeRequest> executedRequests) {
+record BatchReservationResult(Status status, List<ReservationChangeRequest> executedRequests, List<ExecutedCycle> cycles) {
 
     enum Status {
         SUCCESS, FAILURE
     }
 
+    record ExecutedCycle(List<ReservationChangeRequest> requests) {
 
-    static BatchReservationResult success(Set<ReservationChangeRequest> executed) {
-        return new BatchReservationResult(Status.SUCCESS, new ArrayList<>(executed));
+        int size() {
+            return requests.size();
+        }
+    }
+
+
+    static BatchReservationResult success(List<ExecutedCycle> cycles) {
+        List<ReservationChangeRequest> executed = cycles.stream()
+                .flatMap(cycle -> cycle.requests().stream())
+                .toList();
+        return new BatchReservationResult(Status.SUCCESS, executed, List.copyOf(cycles));
     }
 
 
     static BatchReservationResult none() {
-        return new BatchReservationResult(Status.FAILURE, List.of());
+        return new BatchReservationResult(Status.FAILURE, List.of(), List.of());
     }
-}
\ No newline at end of file
+}
@@ -1,123 +1,309 @@
 package com.softwarearchetypes.graphs.cycles;
 
 import com.softwarearchetypes.graphs.cycles.math.Edge;
-import com.softwarearchetypes.graphs.cycles.math.Graph;
-import com.softwarearchetypes.graphs.cycles.math.Node;
+import com.softwarearchetypes.graphs.cycles.math.FrozenGraph;
+import com.softwarearchetypes.graphs.cycles.math.Path;
+import com.softwarearchetypes.graphs.cycles.math.TopTradingCycles;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toSet;
-
-class BatchReservationUseCase {
+// Przy konstruktorach bez repositoryExecutor use case sam tworzy executor wirtualnych wątków i zamyka go w close().
+// Executor podany z zewnątrz należy do wołającego.
+class BatchReservationUseCase implements AutoCloseable {
 
     private final SlotRepository slotRepository;
+    private final CycleCommitter committer;
+    private final ForkJoinPool searchPool;
+    private final RetryPolicy retryPolicy;
+    private final Executor repositoryExecutor;
+    private final ExecutorService ownedExecutor;
+    private final List<CompletableFuture<BatchReservationResult>> uncommitted = new ArrayList<>();
+    private CompletableFuture<BatchReservationResult> lastCommit = CompletableFuture.completedFuture(null);
 
     BatchReservationUseCase(SlotRepository slotRepository) {
+        this(slotRepository, ForkJoinPool.commonPool(), RetryPolicy.defaultPolicy());
+    }
+
+    BatchReservationUseCase(SlotRepository slotRepository, ForkJoinPool searchPool) {
+        this(slotRepository, searchPool, RetryPolicy.defaultPolicy());
+    }
+
+    BatchReservationUseCase(SlotRepository slotRepository, ForkJoinPool searchPool, RetryPolicy retryPolicy) {
+        this(slotRepository, searchPool, retryPolicy, Executors.newVirtualThreadPerTaskExecutor(), true);
+    }
+
+    BatchReservationUseCase(SlotRepository slotRepository, ForkJoinPool searchPool, RetryPolicy retryPolicy, Executor repositoryExecutor) {
+        this(slotRepository, searchPool, retryPolicy, repositoryExecutor, false);
+    }
+
+    private BatchReservationUseCase(SlotRepository slotRepository, ForkJoinPool searchPool, RetryPolicy retryPolicy, Executor repositoryExecutor, boolean ownsExecutor) {
         this.slotRepository = slotRepository;
+        this.committer = new CycleCommitter(slotRepository);
+        this.searchPool = searchPool;
+        this.retryPolicy = retryPolicy;
+        this.repositoryExecutor = repositoryExecutor;
+        this.ownedExecutor = ownsExecutor ? (ExecutorService) repositoryExecutor : null;
     }
 
-    BatchReservationResult execute(List<ReservationChangeRequest> requests) {
-        Graph<SlotId, ReservationChangeRequest> graph = buildGraph(requests);
-        Set<ReservationChangeRequest> dependentRequests = findDependentRequests(graph, requests);
-        if (!dependentRequests.isEmpty()) {
-            Map<SlotId, Slot> slots = loadAllSlots(dependentRequests);
-            // TODO w 1 pętli
-            for (ReservationChangeRequest request : dependentRequests) {
-                Slot fromSlot = slots.get(request.fromSlot());
-                fromSlot.release();
-            }
-            for (ReservationChangeRequest request : dependentRequests) {
-                Slot toSlot = slots.get(request.toSlot());
-                toSlot.assignTo(request.userId());
-            }
-            slotRepository.saveAll(slots.values());
-            return BatchReservationResult.success(dependentRequests);
+    // czeka, aż przyjęte już batche potokowe się dokończą - ich kolejne etapy potrzebują jeszcze executora;
+    // nowych wersji async nie da się potem uruchomić
+    @Override
+    public void close() {
+        if (ownedExecutor == null) {
+            return;
         }
-        return BatchReservationResult.none();
+        CompletableFuture<Void> inFlight;
+        synchronized (this) {
+            inFlight = CompletableFuture.allOf(uncommitted.toArray(CompletableFuture[]::new));
+        }
+        // błąd batcha dostaje jego własny future, zamknięcie tylko czeka na koniec
+        inFlight.handle((ignored, failure) -> null).join();
+        ownedExecutor.shutdown();
     }
 
+    BatchReservationResult execute(List<ReservationChangeRequest> requests) {
+        FrozenGraph<SlotId, ReservationChangeRequest> graph = buildGraph(requests);
+        return retryPolicy.execute(() -> committer.commitOwned(graph.findFirstCycle().stream().toList()));
+    }
+
+    // przy konflikcie wersji właściciele mogli się zmienić, więc graf właścicieli budujemy od nowa
     BatchReservationResult execute(List<ReservationChangeRequest> requests, Eligibility eligibility) {
-        Graph<OwnerId, ReservationChangeRequest> intersection = buildOwnerGraph(requests).intersection(eligibility.asGraph());
-        Set<ReservationChangeRequest> dependentRequests = findDependentRequestsInOwnerGraph(intersection);
-
-        if (!dependentRequests.isEmpty()) {
-            Map<SlotId, Slot> slots = loadAllSlots(dependentRequests);
-            for (ReservationChangeRequest request : dependentRequests) {
-                Slot fromSlot = slots.get(request.fromSlot());
-                fromSlot.release();
+        return retryPolicy.execute(() -> {
+            SlotUnitOfWork unitOfWork = new SlotUnitOfWork(slotRepository);
+            FrozenGraph<OwnerId, ReservationChangeRequest> eligibleGraph = buildEligibleOwnerGraph(requests, unitOfWork, eligibility);
+            return committer.commit(eligibleGraph.findFirstCycle().stream().toList(), unitOfWork);
+        });
+    }
+
+    // wszystkie rozłączne cykle z batcha w jednym zapisie, niezależne wyspy grafu przeszukiwane równolegle
+    BatchReservationResult executeAll(List<ReservationChangeRequest> requests) {
+        FrozenGraph<SlotId, ReservationChangeRequest> graph = buildGraph(requests);
+        List<Path<SlotId, ReservationChangeRequest>> cycles = graph.findDisjointCycles(searchPool);
+        return retryPolicy.execute(() -> committer.commitOwned(cycles));
+    }
+
+    BatchReservationResult executeAll(List<ReservationChangeRequest> requests, Eligibility eligibility) {
+        return retryPolicy.execute(() -> attemptAll(requests, eligibility));
+    }
+
+    // Wersje potokowe: repozytorium wołane na wirtualnych wątkach, wyszukiwanie na searchPool, a zapisy
+    // ustawione w kolejce w kolejności wywołań - ładowanie i szukanie batcha N+1 idzie równolegle z zapisem batcha N,
+    // a dla każdego slotu późniejszy batch zapisuje po wcześniejszym.
+    CompletableFuture<BatchReservationResult> executeAllAsync(List<ReservationChangeRequest> requests) {
+        return pipeline(
+                () -> CompletableFuture.supplyAsync(() -> buildGraph(requests).findDisjointCycles(searchPool), searchPool),
+                Set::of,
+                committer::commitOwned,
+                committer::commitOwned);
+    }
+
+    // właściciele załadowani zanim wcześniejszy batch zapisał te same sloty są nieaktualne - wtedy batch liczymy od nowa.
+    // Eligibility nie jest bezpieczne wątkowo, więc wątki repozytorium czytają migawkę z chwili wywołania.
+    CompletableFuture<BatchReservationResult> executeAllAsync(List<ReservationChangeRequest> requests, Eligibility eligibility) {
+        Eligibility snapshot = eligibility.snapshot();
+        SlotUnitOfWork unitOfWork = new SlotUnitOfWork(slotRepository);
+        return pipeline(
+                () -> CompletableFuture
+                        .supplyAsync(() -> buildEligibleOwnerGraph(requests, unitOfWork, snapshot), repositoryExecutor)
+                        .thenApplyAsync(graph -> graph.findDisjointCycles(searchPool), searchPool),
+                unitOfWork::loadedSlotIds,
+                found -> committer.commit(found, unitOfWork),
+                found -> attemptAll(requests, snapshot));
+    }
+
+    // Oprócz rozłącznych cykli także łańcuchy A->B->...->wolny slot na pozostałych slotach: ostatni w łańcuchu
+    // zajmuje wolny slot, pierwszy zwalnia swój. Cykle i łańcuchy idą jednym saveAll i w wyniku są razem w cycles().
+    BatchReservationResult executeAllWithChains(List<ReservationChangeRequest> requests) {
+        FrozenGraph<SlotId, ReservationChangeRequest> graph = buildGraph(requests);
+        List<Path<SlotId, ReservationChangeRequest>> cycles = graph.findDisjointCycles(searchPool);
+        Set<SlotId> onCycles = cycles.stream()
+                .flatMap(cycle -> cycle.edges().stream())
+                .map(edge -> edge.from().property())
+                .collect(Collectors.toSet());
+        Set<SlotId> allSlotIds = requests.stream()
+                .flatMap(r -> Stream.of(r.fromSlot(), r.toSlot()))
+                .collect(Collectors.toSet());
+        return retryPolicy.execute(() -> {
+            SlotUnitOfWork unitOfWork = new SlotUnitOfWork(slotRepository);
+            Map<SlotId, Slot> slots = unitOfWork.load(allSlotIds);
+            List<Path<SlotId, ReservationChangeRequest>> chains = graph.findDisjointChains(
+                    slotId -> slots.get(slotId) != null && slots.get(slotId).getOwner().isEmpty(), onCycles);
+            List<Path<SlotId, ReservationChangeRequest>> paths = new ArrayList<>(cycles);
+            paths.addAll(chains);
+            return committer.commitOwned(paths, unitOfWork);
+        });
+    }
+
+    // tylko zamiany 2-, 3-, ... maxCycleLength-osobowe, najkrótsze najpierw - długie cykle łatwo się rozsypują
+    BatchReservationResult executeAll(List<ReservationChangeRequest> requests, int maxCycleLength) {
+        FrozenGraph<SlotId, ReservationChangeRequest> graph = buildGraph(requests);
+        List<Path<SlotId, ReservationChangeRequest>> cycles = graph.findCycles(maxCycleLength);
+        return retryPolicy.execute(() -> committer.commitOwned(cycles));
+    }
+
+    BatchReservationResult executeAll(List<ReservationChangeRequest> requests, Eligibility eligibility, int maxCycleLength) {
+        return retryPolicy.execute(() -> {
+            SlotUnitOfWork unitOfWork = new SlotUnitOfWork(slotRepository);
+            FrozenGraph<OwnerId, ReservationChangeRequest> eligibleGraph = buildEligibleOwnerGraph(requests, unitOfWork, eligibility);
+            return committer.commit(eligibleGraph.findCycles(maxCycleLength), unitOfWork);
+        });
+    }
+
+    // rynek Top Trading Cycles: każdy właściciel z listą akceptowalnych slotów zamiast pojedynczych żądań,
+    // wszystkie powstałe cykle w jednym zapisie; preferencja od kogoś, kto nie posiada oferowanego slotu, jest pomijana,
+    // a z kilku preferencji oferujących ten sam slot liczy się pierwsza
+    BatchReservationResult executeTopTradingCycles(List<ReservationPreference> preferences) {
+        return retryPolicy.execute(() -> {
+            SlotUnitOfWork unitOfWork = new SlotUnitOfWork(slotRepository);
+            Map<SlotId, Slot> slots = unitOfWork.load(preferences.stream()
+                    .map(ReservationPreference::offeredSlot)
+                    .collect(Collectors.toSet()));
+            TopTradingCycles<SlotId, ReservationPreference> market = new TopTradingCycles<>();
+            Set<SlotId> onMarket = new HashSet<>();
+            for (ReservationPreference preference : preferences) {
+                Slot offered = slots.get(preference.offeredSlot());
+                if (offered != null && offered.getOwner().equals(preference.owner()) && onMarket.add(preference.offeredSlot())) {
+                    market.addAgent(preference.offeredSlot(), preference, preference.acceptableSlots());
+                }
             }
-            for (ReservationChangeRequest request : dependentRequests) {
-                Slot toSlot = slots.get(request.toSlot());
-                toSlot.assignTo(request.userId());
+            List<Path<SlotId, ReservationChangeRequest>> cycles = market.clear().stream()
+                    .map(this::toRequests)
+                    .toList();
+            return committer.commit(cycles, unitOfWork);
+        });
+    }
+
+    private Path<SlotId, ReservationChangeRequest> toRequests(Path<SlotId, ReservationPreference> cycle) {
+        return new Path<>(cycle.edges().stream()
+                .map(edge -> new Edge<>(edge.from(), edge.to(), edge.property().toRequest(edge.to().property())))
+                .toList());
+    }
+
+    private BatchReservationResult attemptAll(List<ReservationChangeRequest> requests, Eligibility eligibility) {
+        SlotUnitOfWork unitOfWork = new SlotUnitOfWork(slotRepository);
+        FrozenGraph<OwnerId, ReservationChangeRequest> eligibleGraph = buildEligibleOwnerGraph(requests, unitOfWork, eligibility);
+        return committer.commit(eligibleGraph.findDisjointCycles(searchPool), unitOfWork);
+    }
+
+    // Poprzednicy to batche jeszcze niezapisane w chwili startu wyszukiwania - tylko ich zapisy mogą się rozjechać
+    // z tym, co batch przeczytał. Błąd poprzedniego batcha nie blokuje kolejki, dostaje go tylko jego własny future.
+    private synchronized <K> CompletableFuture<BatchReservationResult> pipeline(
+            Supplier<CompletableFuture<List<Path<K, ReservationChangeRequest>>>> search,
+            Supplier<Set<SlotId>> readSlots,
+            Function<List<Path<K, ReservationChangeRequest>>, BatchReservationResult> commit,
+            Function<List<Path<K, ReservationChangeRequest>>, BatchReservationResult> retry) {
+        uncommitted.removeIf(CompletableFuture::isDone);
+        List<CompletableFuture<BatchReservationResult>> predecessors = List.copyOf(uncommitted);
+        CompletableFuture<BatchReservationResult> committed = lastCommit
+                .handle((previous, failure) -> previous)
+                .thenCombine(search.get(), (previous, found) -> found)
+                .thenApplyAsync(found -> {
+                    if (!Collections.disjoint(writtenBy(predecessors), readSlots.get())) {
+                        return retryPolicy.execute(() -> retry.apply(found));
+                    }
+                    try {
+                        return commit.apply(found);
+                    } catch (StaleSlotException e) {
+                        if (retryPolicy.maxAttempts() == 1) {
+                            throw e;
+                        }
+                        return RetryPolicy.attempts(retryPolicy.maxAttempts() - 1).execute(() -> retry.apply(found));
+                    }
+                }, repositoryExecutor);
+        uncommitted.add(committed);
+        lastCommit = committed;
+        return committed;
+    }
+
+    private static Set<SlotId> writtenBy(List<CompletableFuture<BatchReservationResult>> batches) {
+        Set<SlotId> written = new HashSet<>();
+        for (CompletableFuture<BatchReservationResult> batch : batches) {
+            if (batch.isCompletedExceptionally()) {
+                continue;
+            }
+            for (ReservationChangeRequest request : batch.join().executedRequests()) {
+                written.add(request.fromSlot());
+                written.add(request.toSlot());
             }
-            slotRepository.saveAll(slots.values());
-            return BatchReservationResult.success(dependentRequests);
         }
-        return BatchReservationResult.none();
+        return written;
     }
 
-    private Graph<SlotId, ReservationChangeRequest> buildGraph(List<ReservationChangeRequest> requests) {
-        Graph<SlotId, ReservationChangeRequest> graph = new Graph<>();
+    private FrozenGraph<SlotId, ReservationChangeRequest> buildGraph(List<ReservationChangeRequest> requests) {
+        FrozenGraph.Builder<SlotId, ReservationChangeRequest> graph = FrozenGraph.builder(requests.size());
         for (ReservationChangeRequest request : requests) {
-            Node<SlotId> fromNode = new Node<>(request.fromSlot());
-            Node<SlotId> toNode = new Node<>(request.toSlot());
-            Edge<SlotId, ReservationChangeRequest> edge = new Edge<>(fromNode, toNode, request);
-            graph.addEdge(edge);
+            graph.addEdge(request.fromSlot(), request.toSlot(), request);
         }
-        return graph;
+        return graph.build();
     }
 
-    private Map<SlotId, Slot> loadAllSlots(Set<ReservationChangeRequest> dependentRequests) {
-        Set<SlotId> allSlotIds = dependentRequests.stream()
-                .flatMap(r -> Stream.of(r.fromSlot(), r.toSlot()))
-                .collect(Collectors.toSet());
-        return slotRepository.findAll(allSlotIds);
-    }
-
-    private Graph<OwnerId, ReservationChangeRequest> buildOwnerGraph(List<ReservationChangeRequest> requests) {
-        Graph<OwnerId, ReservationChangeRequest> graph = new Graph<>();
+    // graf na OwnerId, od obecnego właściciela fromSlot do obecnego właściciela toSlot,
+    // tylko z krawędziami dopuszczonymi przez eligibility
+    private FrozenGraph<OwnerId, ReservationChangeRequest> buildEligibleOwnerGraph(List<ReservationChangeRequest> requests, SlotUnitOfWork unitOfWork, Eligibility eligibility) {
+        // Najpierw same fromSloty - ich właściciele decydują, które żądania w ogóle mogą być w cyklu
+        Map<SlotId, Slot> fromSlots = unitOfWork.load(requests.stream()
+                .map(ReservationChangeRequest::fromSlot)
+                .collect(Collectors.toSet()));
+        List<ReservationChangeRequest> candidates = possibleCycleMembers(requests, fromSlots, eligibility);
+        FrozenGraph.Builder<OwnerId, ReservationChangeRequest> graph = FrozenGraph.builder(candidates.size());
 
         // Ładujemy sloty żeby poznać ich ownerów
-        Set<SlotId> allSlotIds = requests.stream()
+        Set<SlotId> allSlotIds = candidates.stream()
                 .flatMap(r -> Stream.of(r.fromSlot(), r.toSlot()))
                 .collect(Collectors.toSet());
-        Map<SlotId, Slot> slots = slotRepository.findAll(allSlotIds);
+        Map<SlotId, Slot> slots = unitOfWork.load(allSlotIds);
 
-        for (ReservationChangeRequest request : requests) {
+        Map<OwnerId, List<ReservationChangeRequest>> requestsByOwner = new LinkedHashMap<>();
+        Map<OwnerId, List<OwnerId>> targetsByOwner = new HashMap<>();
+        for (ReservationChangeRequest request : candidates) {
             Slot fromSlot = slots.get(request.fromSlot());
             Slot toSlot = slots.get(request.toSlot());
 
             if (fromSlot != null && toSlot != null) {
-                // Graf na OwnerId: od obecnego właściciela fromSlot do obecnego właściciela toSlot
-                Node<OwnerId> fromOwner = new Node<>(fromSlot.getOwner());
-                Node<OwnerId> toOwner = new Node<>(toSlot.getOwner());
-                Edge<OwnerId, ReservationChangeRequest> edge = new Edge<>(fromOwner, toOwner, request);
-                graph.addEdge(edge);
+                requestsByOwner.computeIfAbsent(fromSlot.getOwner(), owner -> new ArrayList<>()).add(request);
+                targetsByOwner.computeIfAbsent(fromSlot.getOwner(), owner -> new ArrayList<>()).add(toSlot.getOwner());
             }
         }
 
-        return graph;
-    }
-
-    private Set<ReservationChangeRequest> findDependentRequestsInOwnerGraph(Graph<OwnerId, ReservationChangeRequest> graph) {
-        return graph
-                .findFirstCycle()
-                .map(path -> path.edges()
-                        .stream()
-                        .map(Edge::property)
-                        .collect(toSet()))
-                .orElseGet(Collections::emptySet);
+        requestsByOwner.forEach((from, ownerRequests) -> {
+            for (ReservationChangeRequest request : eligibility.eligibleTransfers(from, targetsByOwner.get(from), ownerRequests)) {
+                graph.addEdge(from, slots.get(request.toSlot()).getOwner(), request);
+            }
+        });
+        return graph.build();
     }
 
-    private Set<ReservationChangeRequest> findDependentRequests(Graph<SlotId, ReservationChangeRequest> graph, List<ReservationChangeRequest> requests) {
-        return graph
-                .findFirstCycle()
-                .map(path -> path.edges()
-                        .stream()
-                        .map(Edge::property)
-                        .collect(toSet()))
-                .orElseGet(Collections::emptySet);
+    // Bez ładowania toSlotów: krawędź grafu wychodzi od obecnego właściciela fromSlot, a cykl właścicieli mieści się
+    // w jednej silnie spójnej składowej uprawnień i przechodzi przez co najmniej dwóch takich właścicieli z tej składowej
+    // (albo przez jednego, który może przekazać slot sam sobie). Pozostałe żądania nie trafią do żadnego cyklu.
+    private List<ReservationChangeRequest> possibleCycleMembers(List<ReservationChangeRequest> requests, Map<SlotId, Slot> fromSlots, Eligibility eligibility) {
+        OwnerId[] owners = new OwnerId[requests.size()];
+        int[] components = new int[requests.size()];
+        Map<Integer, Set<OwnerId>> ownersByComponent = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            Slot fromSlot = fromSlots.get(requests.get(i).fromSlot());
+            owners[i] = fromSlot == null ? null : fromSlot.getOwner();
+            components[i] = owners[i] == null ? Eligibility.NO_COMPONENT : eligibility.cycleComponentOf(owners[i]);
+            if (components[i] != Eligibility.NO_COMPONENT) {
+                ownersByComponent.computeIfAbsent(components[i], component -> new HashSet<>()).add(owners[i]);
+            }
+        }
+        List<ReservationChangeRequest> candidates = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (components[i] != Eligibility.NO_COMPONENT
+                    && (ownersByComponent.get(components[i]).size() > 1 || eligibility.isTransferEligible(owners[i], owners[i]))) {
+                candidates.add(requests.get(i));
+            }
+        }
+        return candidates;
     }
 }
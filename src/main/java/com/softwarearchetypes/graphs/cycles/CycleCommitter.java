@@ -0,0 +1,77 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import com.softwarearchetypes.graphs.cycles.BatchReservationResult.ExecutedCycle;
+import com.softwarearchetypes.graphs.cycles.math.Edge;
+import com.softwarearchetypes.graphs.cycles.math.Path;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class CycleCommitter {
+
+    private final SlotRepository slotRepository;
+
+    CycleCommitter(SlotRepository slotRepository) {
+        this.slotRepository = slotRepository;
+    }
+
+    <K> BatchReservationResult commit(List<Path<K, ReservationChangeRequest>> cycles) {
+        return commit(cycles, new SlotUnitOfWork(slotRepository));
+    }
+
+    <K> BatchReservationResult commitOwned(List<Path<K, ReservationChangeRequest>> paths) {
+        return commitOwned(paths, new SlotUnitOfWork(slotRepository));
+    }
+
+    // Ścieżki zbudowane z samych żądań, bez odczytu właścicieli: przy każdej próbie sprawdzamy na świeżo
+    // załadowanych slotach, że fromSlot nadal należy do zgłaszającego. Ścieżka z choć jednym nieaktualnym
+    // żądaniem odpada w całości - inny batch zdążył przejąć slot i jego zapis ma zostać.
+    <K> BatchReservationResult commitOwned(List<Path<K, ReservationChangeRequest>> paths, SlotUnitOfWork unitOfWork) {
+        Set<SlotId> fromSlots = paths.stream()
+                .flatMap(path -> path.edges().stream())
+                .map(edge -> edge.property().fromSlot())
+                .collect(Collectors.toSet());
+        Map<SlotId, Slot> slots = unitOfWork.load(fromSlots);
+        List<Path<K, ReservationChangeRequest>> stillOwned = paths.stream()
+                .filter(path -> path.edges().stream().allMatch(edge -> isOwnedByRequester(edge.property(), slots)))
+                .toList();
+        return commit(stillOwned, unitOfWork);
+    }
+
+    <K> BatchReservationResult commit(List<Path<K, ReservationChangeRequest>> cycles, SlotUnitOfWork unitOfWork) {
+        if (cycles.isEmpty()) {
+            return BatchReservationResult.none();
+        }
+        List<ExecutedCycle> executedCycles = cycles.stream()
+                .map(path -> new ExecutedCycle(path.edges().stream().map(Edge::property).toList()))
+                .toList();
+
+        // slot zwalniany przez jedno żądanie może być zajmowany przez inne - przypisanie wygrywa
+        Map<SlotId, OwnerId> newOwners = new HashMap<>();
+        for (ExecutedCycle cycle : executedCycles) {
+            for (ReservationChangeRequest request : cycle.requests()) {
+                newOwners.putIfAbsent(request.fromSlot(), OwnerId.empty());
+                newOwners.put(request.toSlot(), request.userId());
+            }
+        }
+        Map<SlotId, Slot> slots = unitOfWork.load(newOwners.keySet());
+        newOwners.forEach((slotId, owner) -> {
+            Slot slot = slots.get(slotId);
+            if (owner.isEmpty()) {
+                slot.release();
+            } else {
+                slot.assignTo(owner);
+            }
+        });
+        unitOfWork.commit();
+        return BatchReservationResult.success(executedCycles);
+    }
+
+    private static boolean isOwnedByRequester(ReservationChangeRequest request, Map<SlotId, Slot> slots) {
+        Slot fromSlot = slots.get(request.fromSlot());
+        return fromSlot != null && fromSlot.getOwner().equals(request.userId());
+    }
+}
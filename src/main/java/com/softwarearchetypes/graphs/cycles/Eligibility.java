@@ -1,29 +1,273 @@
 package com.softwarearchetypes.graphs.cycles;
 
 import com.softwarearchetypes.graphs.cycles.math.Edge;
+import com.softwarearchetypes.graphs.cycles.math.FrozenGraph;
 import com.softwarearchetypes.graphs.cycles.math.Graph;
 import com.softwarearchetypes.graphs.cycles.math.Node;
 
+import java.util.*;
+
 
 //limitReached - call this class
 //departments changed - call this class
+// właściciele są internowani do intów, a dla każdego trzymamy wiersz z właścicielami, do których wolno przekazać slot
+// (i odwrotny wiersz z właścicielami, od których można slot dostać).
+// Na bieżąco utrzymujemy też silnie spójne składowe grafu uprawnień: zamiana właścicieli z różnych składowych
+// nigdy nie domknie cyklu. Dodanie krawędzi może tylko scalić składowe, usunięcie - tylko podzielić tę jedną,
+// w której leżała, więc przeliczamy wyłącznie dotknięty fragment grafu.
 class Eligibility {
 
-    private final Graph<OwnerId, Void> graph = new Graph<>();
+    static final int NO_COMPONENT = -1;
+
+    private final Map<OwnerId, Integer> ids = new HashMap<>();
+    private final List<OwnerId> owners = new ArrayList<>();
+    private final List<OwnerRow> rows = new ArrayList<>();
+    private final List<OwnerRow> incoming = new ArrayList<>();
+    private final List<EligibilityListener> listeners = new ArrayList<>();
+    private int[] componentOf = new int[16];
+    private final Map<Integer, Set<Integer>> componentMembers = new HashMap<>();
+    private int nextComponent;
+    private Eligibility snapshot;
+    // wiersze współdzielone z migawką - przed pierwszą zmianą po migawce wiersz jest kopiowany (copy-on-write)
+    private final BitSet sharedRows = new BitSet();
+    private final BitSet sharedIncoming = new BitSet();
+
+    Eligibility() {
+    }
+
+    // kopia bez słuchaczy; zbiory członków składowych nie są zmieniane po przypisaniu, a wiersze obie strony
+    // kopiują dopiero przed zmianą, więc wszystko poza listami i tablicą składowych jest współdzielone
+    private Eligibility(Eligibility source) {
+        ids.putAll(source.ids);
+        owners.addAll(source.owners);
+        rows.addAll(source.rows);
+        incoming.addAll(source.incoming);
+        source.sharedRows.set(0, rows.size());
+        source.sharedIncoming.set(0, incoming.size());
+        sharedRows.set(0, rows.size());
+        sharedIncoming.set(0, incoming.size());
+        componentOf = source.componentOf.clone();
+        componentMembers.putAll(source.componentMembers);
+        nextComponent = source.nextComponent;
+    }
+
+    // niezmieniana dalej kopia do czytania z innych wątków; ta sama, dopóki uprawnienia się nie zmienią
+    Eligibility snapshot() {
+        if (snapshot == null) {
+            snapshot = new Eligibility(this);
+            snapshot.snapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    void subscribe(EligibilityListener listener) {
+        listeners.add(listener);
+    }
 
     void markTransferEligible(OwnerId from, OwnerId to) {
-        graph.addEdge(new Edge<>(new Node<>(from), new Node<>(to), null));
+        int source = intern(from);
+        int target = intern(to);
+        if (!rows.get(source).contains(target)) {
+            snapshot = null;
+            rows.set(source, writable(rows, sharedRows, source).add(target));
+            incoming.set(target, writable(incoming, sharedIncoming, target).add(source));
+            if (componentOf[source] != componentOf[target]) {
+                mergeComponentsClosedBy(source, target);
+            }
+            notifyListeners(from, to, true);
+        }
     }
 
     void markTransferIneligible(OwnerId from, OwnerId to) {
-        graph.removeEdge(new Edge<>(new Node<>(from), new Node<>(to), null));
+        Integer source = ids.get(from);
+        Integer target = ids.get(to);
+        if (source != null && target != null && rows.get(source).contains(target)) {
+            snapshot = null;
+            rows.set(source, writable(rows, sharedRows, source).remove(target));
+            incoming.set(target, writable(incoming, sharedIncoming, target).remove(source));
+            if (source.intValue() != target && componentOf[source] == componentOf[target]) {
+                splitComponent(componentOf[source]);
+            }
+            notifyListeners(from, to, false);
+        }
     }
 
     boolean isTransferEligible(OwnerId from, OwnerId to) {
-        return graph.hasEdge(new Node<>(from), new Node<>(to));
+        Integer source = ids.get(from);
+        Integer target = ids.get(to);
+        return source != null && target != null && rows.get(source).contains(target);
+    }
+
+    // składowa, w której właściciel może brać udział w cyklu zamian, albo NO_COMPONENT
+    int cycleComponentOf(OwnerId owner) {
+        Integer id = ids.get(owner);
+        if (id == null) {
+            return NO_COMPONENT;
+        }
+        int component = componentOf[id];
+        return componentMembers.get(component).size() > 1 || rows.get(id).contains(id) ? component : NO_COMPONENT;
+    }
+
+    // przekazania od jednego właściciela sprawdzane naraz: cele składamy w bitset
+    // i robimy AND z wierszem uprawnień słowo po słowie; zwraca żądania z uprawnionym celem
+    <R> List<R> eligibleTransfers(OwnerId from, List<OwnerId> targets, List<R> requests) {
+        Integer source = ids.get(from);
+        if (source == null) {
+            return List.of();
+        }
+        int[] targetIds = new int[targets.size()];
+        int firstWord = Integer.MAX_VALUE;
+        int lastWord = -1;
+        for (int i = 0; i < targetIds.length; i++) {
+            Integer target = ids.get(targets.get(i));
+            targetIds[i] = target == null ? -1 : target;
+            if (target != null) {
+                firstWord = Math.min(firstWord, target >>> 6);
+                lastWord = Math.max(lastWord, target >>> 6);
+            }
+        }
+        if (lastWord < 0) {
+            return List.of();
+        }
+        long[] words = new long[lastWord - firstWord + 1];
+        for (int target : targetIds) {
+            if (target >= 0) {
+                words[(target >>> 6) - firstWord] |= 1L << target;
+            }
+        }
+        rows.get(source).retainIn(words, firstWord);
+
+        List<R> eligible = new ArrayList<>();
+        for (int i = 0; i < targetIds.length; i++) {
+            int target = targetIds[i];
+            if (target >= 0 && (words[(target >>> 6) - firstWord] & (1L << target)) != 0) {
+                eligible.add(requests.get(i));
+            }
+        }
+        return eligible;
     }
 
     Graph<OwnerId, Void> asGraph() {
+        Graph<OwnerId, Void> graph = new Graph<>();
+        for (int source = 0; source < rows.size(); source++) {
+            Node<OwnerId> from = new Node<>(owners.get(source));
+            rows.get(source).forEach(target -> graph.addEdge(new Edge<>(from, new Node<>(owners.get(target)), null)));
+        }
         return graph;
     }
-}
\ No newline at end of file
+
+    // nowa krawędź source -> target scala dokładnie to, co leży na ścieżkach z target z powrotem do source:
+    // osiągalne z target i jednocześnie sięgające source. Szukamy naraz w przód od target i wstecz od source,
+    // zawsze rozszerzając mniejszą stronę; gdy jedna się wyczerpie, drugą przechodzimy już tylko w jej obrębie.
+    // Koszt ogranicza mniejsza z dwóch stron, a nie cała część grafu osiągalna z target.
+    private void mergeComponentsClosedBy(int source, int target) {
+        Set<Integer> forward = new HashSet<>(Set.of(target));
+        Set<Integer> backward = new HashSet<>(Set.of(source));
+        Deque<Integer> forwardQueue = new ArrayDeque<>(forward);
+        Deque<Integer> backwardQueue = new ArrayDeque<>(backward);
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            if (forward.size() <= backward.size()) {
+                visitNext(forwardQueue, forward, rows);
+            } else {
+                visitNext(backwardQueue, backward, incoming);
+            }
+        }
+        Set<Integer> merged = forwardQueue.isEmpty()
+                ? reachableWithin(source, incoming, forward)
+                : reachableWithin(target, rows, backward);
+        if (merged.isEmpty()) {
+            return;
+        }
+        // scalane składowe leżą w całości na cyklu przez nową krawędź
+        merged.forEach(member -> componentMembers.remove(componentOf[member]));
+        assignComponent(merged);
+    }
+
+    private void visitNext(Deque<Integer> queue, Set<Integer> visited, List<OwnerRow> edges) {
+        edges.get(queue.poll()).forEach(next -> {
+            if (visited.add(next)) {
+                queue.add(next);
+            }
+        });
+    }
+
+    // wszystko w allowed osiągalne ze start; pusty zbiór, gdy start leży poza allowed
+    private Set<Integer> reachableWithin(int start, List<OwnerRow> edges, Set<Integer> allowed) {
+        Set<Integer> reachable = new HashSet<>();
+        if (!allowed.contains(start)) {
+            return reachable;
+        }
+        Deque<Integer> queue = new ArrayDeque<>();
+        reachable.add(start);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            edges.get(queue.poll()).forEach(next -> {
+                if (allowed.contains(next) && reachable.add(next)) {
+                    queue.add(next);
+                }
+            });
+        }
+        return reachable;
+    }
+
+    private void splitComponent(int component) {
+        for (Set<Integer> part : stronglyConnected(componentMembers.remove(component))) {
+            assignComponent(part);
+        }
+    }
+
+    private List<Set<Integer>> stronglyConnected(Set<Integer> members) {
+        FrozenGraph.Builder<Integer, Void> graph = FrozenGraph.builder();
+        for (int member : members) {
+            graph.addNode(member);
+            rows.get(member).forEach(target -> {
+                if (members.contains(target)) {
+                    graph.addEdge(member, target, null);
+                }
+            });
+        }
+        List<Set<Integer>> components = new ArrayList<>();
+        for (Set<Node<Integer>> component : graph.build().stronglyConnectedComponents()) {
+            Set<Integer> memberIds = new HashSet<>();
+            component.forEach(node -> memberIds.add(node.property()));
+            components.add(memberIds);
+        }
+        return components;
+    }
+
+    private void assignComponent(Set<Integer> members) {
+        int component = nextComponent++;
+        members.forEach(member -> componentOf[member] = component);
+        componentMembers.put(component, members);
+    }
+
+    private static OwnerRow writable(List<OwnerRow> rows, BitSet shared, int owner) {
+        if (shared.get(owner)) {
+            shared.clear(owner);
+            rows.set(owner, rows.get(owner).copy());
+        }
+        return rows.get(owner);
+    }
+
+    private void notifyListeners(OwnerId from, OwnerId to, boolean eligible) {
+        listeners.forEach(listener -> listener.transferEligibilityChanged(from, to, eligible));
+    }
+
+    private int intern(OwnerId owner) {
+        Integer id = ids.get(owner);
+        if (id != null) {
+            return id;
+        }
+        snapshot = null;
+        id = owners.size();
+        ids.put(owner, id);
+        owners.add(owner);
+        rows.add(OwnerRow.empty());
+        incoming.add(OwnerRow.empty());
+        if (id == componentOf.length) {
+            componentOf = Arrays.copyOf(componentOf, id * 2);
+        }
+        assignComponent(new HashSet<>(Set.of(id)));
+        return id;
+    }
+}
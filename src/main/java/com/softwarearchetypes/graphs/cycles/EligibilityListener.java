@@ -0,0 +1,7 @@
+package com.softwarearchetypes.graphs.cycles;
+
+// wołany tylko przy faktycznej zmianie - ponowne oznaczenie tej samej pary nie generuje zdarzenia
+interface EligibilityListener {
+
+    void transferEligibilityChanged(OwnerId from, OwnerId to, boolean eligible);
+}
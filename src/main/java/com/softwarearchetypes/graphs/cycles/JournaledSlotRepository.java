@@ -0,0 +1,212 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+// Trwały dekorator repozytorium, write-ahead: każda partia z saveAll najpierw trafia do dziennika,
+// a do delegata dopiero po fsync, który współdzieli z innymi równoległymi commitami (group commit).
+// Delegat dostaje partie w kolejności dziennika. Dekorator zakłada, że jest jedynym piszącym do delegata.
+// Co snapshotEvery partii dziennik jest odkładany i scalany strumieniowo z poprzednią migawką w nową.
+// Na starcie migawka i dziennik są odtwarzane do delegata w kolejności zapisu - wygrywa wyższa wersja slotu,
+// a przy równej późniejsza ramka (save nie podbija wersji), więc odtworzenie tej samej partii dwa razy niczego nie psuje.
+class JournaledSlotRepository implements SlotRepository, AutoCloseable {
+
+    static final int DEFAULT_SNAPSHOT_EVERY = 10_000;
+
+    private final SlotRepository delegate;
+    private final SlotJournal journal;
+    private final Path snapshotFile;
+    private final Path retiredJournalFile;
+    private final int snapshotEvery;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    // wersje zapisane w dzienniku, a jeszcze nie w delegacie - względem nich sprawdzane są kolejne partie
+    private final Map<SlotId, Long> pendingVersions = new ConcurrentHashMap<>();
+    private final Object applyOrder = new Object();
+    private int batchesSinceSnapshot;
+    private long nextTicket;
+    private long appliedTickets;
+
+    private JournaledSlotRepository(SlotRepository delegate, SlotJournal journal, Path snapshotFile, Path retiredJournalFile, int snapshotEvery) {
+        this.delegate = delegate;
+        this.journal = journal;
+        this.snapshotFile = snapshotFile;
+        this.retiredJournalFile = retiredJournalFile;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    static JournaledSlotRepository open(SlotRepository delegate, Path directory) {
+        return open(delegate, directory, DEFAULT_SNAPSHOT_EVERY);
+    }
+
+    static JournaledSlotRepository open(SlotRepository delegate, Path directory, int snapshotEvery) {
+        Path snapshotFile = directory.resolve("slots.snapshot");
+        Path retiredJournalFile = directory.resolve("slots.journal.retired");
+        // dokończ checkpoint przerwany awarią
+        SlotJournal.compact(snapshotFile, retiredJournalFile);
+        SlotJournal.readSnapshot(snapshotFile, frame -> replay(delegate, frame));
+        SlotJournal journal = SlotJournal.open(directory.resolve("slots.journal"), frame -> replay(delegate, frame));
+        return new JournaledSlotRepository(delegate, journal, snapshotFile, retiredJournalFile, snapshotEvery);
+    }
+
+    @Override
+    public Optional<Slot> findById(SlotId slotId) {
+        return delegate.findById(slotId);
+    }
+
+    @Override
+    public Map<SlotId, Slot> findAll(Set<SlotId> slotIds) {
+        return delegate.findAll(slotIds);
+    }
+
+    @Override
+    public void save(Slot slot) {
+        saveDurably(List.of(slot), false, () -> delegate.save(slot));
+    }
+
+    @Override
+    public void saveAll(Collection<Slot> slots) {
+        saveDurably(slots, true, () -> delegate.saveAll(slots));
+    }
+
+    // nowa migawka z poprzedniej i dziennika; commity wstrzymuje tylko na czas podmiany pliku dziennika
+    void checkpoint() {
+        checkpointLock.lock();
+        try {
+            compact();
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        journal.close();
+    }
+
+    // walidacja wersji i dopisanie do dziennika pod jednym zamkiem, żeby kolejność w dzienniku była
+    // kolejnością commitów; fsync poza zamkiem, wspólny dla wszystkich czekających, potem delegat w tej samej kolejności
+    private void saveDurably(Collection<Slot> slots, boolean compareAndSet, Runnable apply) {
+        List<Slot> journaled;
+        long position;
+        long ticket;
+        boolean snapshotDue;
+        appendLock.lock();
+        try {
+            if (compareAndSet) {
+                rejectStale(slots);
+            }
+            // saveAll podbija wersje, więc w dzienniku ląduje stan po zapisie
+            journaled = slots.stream().map(slot -> compareAndSet ? saved(slot) : slot.copy()).toList();
+            position = journal.append(journaled);
+            journaled.forEach(slot -> pendingVersions.put(slot.id(), slot.version()));
+            ticket = nextTicket++;
+            snapshotDue = ++batchesSinceSnapshot >= snapshotEvery;
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            try {
+                journal.awaitDurable(position);
+            } finally {
+                awaitTurn(ticket);
+            }
+            apply.run();
+        } finally {
+            journaled.forEach(slot -> pendingVersions.remove(slot.id(), slot.version()));
+            finishTurn();
+        }
+        // tylko jeden z wątków, które zobaczą snapshotDue, robi checkpoint; reszta nie czeka
+        if (snapshotDue && checkpointLock.tryLock()) {
+            try {
+                compact();
+            } finally {
+                checkpointLock.unlock();
+            }
+        }
+    }
+
+    private void compact() {
+        // poprzedni checkpoint mógł paść po odłożeniu dziennika - najpierw go dokończ, żeby rotate niczego nie nadpisał
+        SlotJournal.compact(snapshotFile, retiredJournalFile);
+        appendLock.lock();
+        try {
+            journal.rotate(retiredJournalFile);
+            batchesSinceSnapshot = 0;
+        } finally {
+            appendLock.unlock();
+        }
+        SlotJournal.compact(snapshotFile, retiredJournalFile);
+    }
+
+    // ten sam warunek co compare-and-set delegata, ale liczony także względem partii jeszcze niezastosowanych
+    private void rejectStale(Collection<Slot> slots) {
+        Map<SlotId, Long> pending = new HashMap<>();
+        for (Slot slot : slots) {
+            Long version = pendingVersions.get(slot.id());
+            if (version != null) {
+                pending.put(slot.id(), version);
+            }
+        }
+        Map<SlotId, Slot> stored = delegate.findAll(slots.stream().map(Slot::id).collect(Collectors.toSet()));
+        Set<SlotId> stale = slots.stream()
+                .filter(slot -> expectedVersion(slot.id(), pending, stored) != slot.version())
+                .map(Slot::id)
+                .collect(Collectors.toSet());
+        if (!stale.isEmpty()) {
+            throw new StaleSlotException(stale);
+        }
+    }
+
+    private static long expectedVersion(SlotId slotId, Map<SlotId, Long> pending, Map<SlotId, Slot> stored) {
+        Long version = pending.get(slotId);
+        if (version != null) {
+            return version;
+        }
+        Slot slot = stored.get(slotId);
+        return slot == null ? 0 : slot.version();
+    }
+
+    private static Slot saved(Slot slot) {
+        Slot saved = slot.copy();
+        saved.versionSaved();
+        return saved;
+    }
+
+    private void awaitTurn(long ticket) {
+        boolean interrupted = false;
+        synchronized (applyOrder) {
+            while (appliedTickets != ticket) {
+                try {
+                    applyOrder.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void finishTurn() {
+        synchronized (applyOrder) {
+            appliedTickets++;
+            applyOrder.notifyAll();
+        }
+    }
+
+    private static void replay(SlotRepository delegate, List<Slot> frame) {
+        Map<SlotId, Slot> stored = delegate.findAll(frame.stream().map(Slot::id).collect(Collectors.toSet()));
+        for (Slot slot : frame) {
+            Slot current = stored.get(slot.id());
+            if (current == null || current.version() <= slot.version()) {
+                delegate.save(slot);
+                stored.put(slot.id(), slot);
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Trwały słownik String -> long w plikach mapowanych: tablica z adresowaniem otwartym,
+// przesunięcia kluczy oraz same klucze jako [długość][bajty UTF-8]. Kody są gęste od 0.
+final class MappedDictionary implements AutoCloseable {
+
+    static final long ABSENT = -1;
+
+    private static final long CAPACITY = 0;
+    private static final long SIZE = 8;
+    private static final long NEXT_KEY_POSITION = 16;
+    private static final long FIRST_OFFSET = 24;
+
+    private final MappedRegion table;
+    private final MappedRegion offsets;
+    private final MappedRegion keys;
+    private final long capacity;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private MappedDictionary(MappedRegion table, MappedRegion offsets, MappedRegion keys, long capacity) {
+        this.table = table;
+        this.offsets = offsets;
+        this.keys = keys;
+        this.capacity = capacity;
+    }
+
+    static MappedDictionary open(Path directory, String name, long maxEntries) {
+        MappedRegion table = MappedRegion.open(directory.resolve(name + ".table"));
+        MappedRegion offsets = MappedRegion.open(directory.resolve(name + ".offsets"));
+        MappedRegion keys = MappedRegion.open(directory.resolve(name + ".keys"));
+        long capacity = offsets.getLong(CAPACITY);
+        if (capacity == 0) {
+            capacity = Long.highestOneBit(Math.max(maxEntries, 1) * 2 - 1) << 1;
+            offsets.putLong(CAPACITY, capacity);
+        }
+        return new MappedDictionary(table, offsets, keys, capacity);
+    }
+
+    long find(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            long bucket = bucketOf(bytes);
+            return bucket < 0 ? ABSENT : table.getLong(bucket * 8) - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long intern(String key) {
+        long code = find(key);
+        if (code != ABSENT) {
+            return code;
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            long bucket = bucketOf(bytes);
+            if (bucket >= 0) {
+                return table.getLong(bucket * 8) - 1;
+            }
+            long size = offsets.getLong(SIZE);
+            if (size * 2 >= capacity) {
+                throw new IllegalStateException("Dictionary is full: " + size + " entries");
+            }
+            long position = keyPosition(offsets.getLong(NEXT_KEY_POSITION), bytes.length);
+            keys.putInt(position, bytes.length);
+            keys.putBytes(position + 4, bytes);
+            offsets.putLong(FIRST_OFFSET + size * 8, position);
+            table.putLong((-bucket - 1) * 8, size + 1);
+            offsets.putLong(NEXT_KEY_POSITION, position + 4 + bytes.length);
+            offsets.putLong(SIZE, size + 1);
+            return size;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    String keyOf(long code) {
+        long position = offsets.getLong(FIRST_OFFSET + code * 8);
+        byte[] bytes = new byte[keys.getInt(position)];
+        keys.getBytes(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    long size() {
+        return offsets.getLong(SIZE);
+    }
+
+    void force() {
+        keys.force();
+        offsets.force();
+        table.force();
+    }
+
+    @Override
+    public void close() {
+        keys.close();
+        offsets.close();
+        table.close();
+    }
+
+    // >= 0: kubełek z kluczem, < 0: -(pierwszy wolny kubełek) - 1
+    private long bucketOf(byte[] bytes) {
+        long mask = capacity - 1;
+        for (long bucket = mix(Arrays.hashCode(bytes)) & mask; ; bucket = (bucket + 1) & mask) {
+            long entry = table.getLong(bucket * 8);
+            if (entry == 0) {
+                return -bucket - 1;
+            }
+            if (keyEquals(entry - 1, bytes)) {
+                return bucket;
+            }
+        }
+    }
+
+    private boolean keyEquals(long code, byte[] bytes) {
+        long position = offsets.getLong(FIRST_OFFSET + code * 8);
+        if (keys.getInt(position) != bytes.length) {
+            return false;
+        }
+        byte[] stored = new byte[bytes.length];
+        keys.getBytes(position + 4, stored);
+        return Arrays.equals(stored, bytes);
+    }
+
+    // klucz nie może przekraczać granicy kawałka mapowania
+    private static long keyPosition(long next, int length) {
+        long chunkEnd = (next | (MappedRegion.CHUNK_SIZE - 1)) + 1;
+        return next + 4 + length > chunkEnd ? chunkEnd : next;
+    }
+
+    private static long mix(int hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,105 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.*;
+
+// Plik mapowany do pamięci kawałkami po 128 MiB, mapowanymi dopiero przy pierwszym dostępie.
+// Dane żyją poza stertą, więc GC nie widzi ich rozmiaru.
+final class MappedRegion implements AutoCloseable {
+
+    static final int CHUNK_BITS = 27;
+    static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final FileChannel channel;
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+    private MappedRegion(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static MappedRegion open(Path file) {
+        try {
+            return new MappedRegion(FileChannel.open(file, CREATE, READ, WRITE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long getLong(long position) {
+        return chunk(position).getLong(offset(position));
+    }
+
+    void putLong(long position, long value) {
+        chunk(position).putLong(offset(position), value);
+    }
+
+    int getInt(long position) {
+        return chunk(position).getInt(offset(position));
+    }
+
+    void putInt(long position, int value) {
+        chunk(position).putInt(offset(position), value);
+    }
+
+    // bajty muszą mieścić się w jednym kawałku - pilnuje tego wywołujący
+    void getBytes(long position, byte[] target) {
+        chunk(position).get(offset(position), target);
+    }
+
+    void putBytes(long position, byte[] source) {
+        chunk(position).put(offset(position), source);
+    }
+
+    void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private MappedByteBuffer chunk(long position) {
+        int index = (int) (position >>> CHUNK_BITS);
+        MappedByteBuffer[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        return map(index);
+    }
+
+    private synchronized MappedByteBuffer map(int index) {
+        MappedByteBuffer[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        try {
+            MappedByteBuffer[] grown = Arrays.copyOf(current, Math.max(current.length, index + 1));
+            grown[index] = channel.map(FileChannel.MapMode.READ_WRITE, index * CHUNK_SIZE, CHUNK_SIZE);
+            chunks = grown;
+            return grown[index];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int offset(long position) {
+        return (int) (position & CHUNK_MASK);
+    }
+}
@@ -0,0 +1,129 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.nio.file.Path;
+import java.util.*;
+
+// Repozytorium slotów poza stertą: SlotId i OwnerId zakodowane słownikowo do long,
+// a rekord slotu [kod właściciela + 1][wersja] leży w pliku mapowanym pod indeksem kodu slotu.
+// Po restarcie pliki są po prostu mapowane ponownie - nic nie jest odbudowywane.
+class MappedSlotRepository implements SlotRepository, AutoCloseable {
+
+    private static final long RECORD_SIZE = 16;
+    private static final long NO_SLOT = 0;
+
+    private final MappedDictionary slotIds;
+    private final MappedDictionary ownerIds;
+    private final MappedRegion records;
+    private final SlotLocks locks = new SlotLocks(1024);
+
+    private MappedSlotRepository(MappedDictionary slotIds, MappedDictionary ownerIds, MappedRegion records) {
+        this.slotIds = slotIds;
+        this.ownerIds = ownerIds;
+        this.records = records;
+    }
+
+    static MappedSlotRepository open(Path directory, long maxSlots, long maxOwners) {
+        return new MappedSlotRepository(
+                MappedDictionary.open(directory, "slot-ids", maxSlots),
+                MappedDictionary.open(directory, "owner-ids", maxOwners),
+                MappedRegion.open(directory.resolve("slots.records")));
+    }
+
+    @Override
+    public Optional<Slot> findById(SlotId slotId) {
+        return Optional.ofNullable(findAll(Set.of(slotId)).get(slotId));
+    }
+
+    @Override
+    public void save(Slot slot) {
+        long code = slotIds.intern(slot.id().value());
+        long owner = ownerIds.intern(slot.getOwner().value());
+        locks.withLocks(List.of(slot.id()), () -> {
+            write(code, owner, slot.version());
+            return null;
+        });
+    }
+
+    @Override
+    public void saveAll(Collection<Slot> values) {
+        long[] codes = new long[values.size()];
+        long[] owners = new long[values.size()];
+        List<Slot> slots = new ArrayList<>(values);
+        for (int i = 0; i < slots.size(); i++) {
+            codes[i] = slotIds.intern(slots.get(i).id().value());
+            owners[i] = ownerIds.intern(slots.get(i).getOwner().value());
+        }
+        locks.withLocks(slots.stream().map(Slot::id).toList(), () -> {
+            Set<SlotId> stale = new HashSet<>();
+            for (int i = 0; i < slots.size(); i++) {
+                if (storedVersion(codes[i]) != slots.get(i).version()) {
+                    stale.add(slots.get(i).id());
+                }
+            }
+            if (!stale.isEmpty()) {
+                throw new StaleSlotException(stale);
+            }
+            for (int i = 0; i < slots.size(); i++) {
+                Slot slot = slots.get(i);
+                slot.versionSaved();
+                write(codes[i], owners[i], slot.version());
+            }
+            return null;
+        });
+    }
+
+    // odczyt wsadowy: kody posortowane, więc rekordy czytane są w kolejności pliku
+    @Override
+    public Map<SlotId, Slot> findAll(Set<SlotId> allSlotIds) {
+        long[] codes = new long[allSlotIds.size()];
+        Map<Long, SlotId> byCode = new HashMap<>();
+        int size = 0;
+        for (SlotId slotId : allSlotIds) {
+            long code = slotIds.find(slotId.value());
+            if (code != MappedDictionary.ABSENT) {
+                codes[size++] = code;
+                byCode.put(code, slotId);
+            }
+        }
+        long[] sorted = Arrays.copyOf(codes, size);
+        Arrays.sort(sorted);
+        return locks.withLocks(byCode.values(), () -> {
+            Map<SlotId, Slot> result = new HashMap<>();
+            for (long code : sorted) {
+                long owner = records.getLong(code * RECORD_SIZE);
+                if (owner != NO_SLOT) {
+                    SlotId slotId = byCode.get(code);
+                    long version = records.getLong(code * RECORD_SIZE + 8);
+                    result.put(slotId, new Slot(slotId, OwnerId.of(ownerIds.keyOf(owner - 1)), version));
+                }
+            }
+            return result;
+        });
+    }
+
+    long slotCount() {
+        return slotIds.size();
+    }
+
+    void flush() {
+        slotIds.force();
+        ownerIds.force();
+        records.force();
+    }
+
+    @Override
+    public void close() {
+        slotIds.close();
+        ownerIds.close();
+        records.close();
+    }
+
+    private long storedVersion(long code) {
+        return records.getLong(code * RECORD_SIZE) == NO_SLOT ? 0 : records.getLong(code * RECORD_SIZE + 8);
+    }
+
+    private void write(long code, long owner, long version) {
+        records.putLong(code * RECORD_SIZE + 8, version);
+        records.putLong(code * RECORD_SIZE, owner + 1);
+    }
+}
@@ -0,0 +1,242 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Zbiór właścicieli (po zinternowanym id), do których wolno przekazać slot od jednego właściciela.
+// Rzadki wiersz to hash-set intów, gęsty to bitset - wiersz przechodzi na bitset,
+// gdy ten zajmuje mniej pamięci niż hash-set, i wraca na hash-set, gdy bitset jest zapełniony
+// w mniej niż jednej czwartej słów. Odstęp między progami chroni przed przełączaniem przy każdej zmianie.
+interface OwnerRow {
+
+    boolean contains(int owner);
+
+    OwnerRow add(int owner);
+
+    OwnerRow remove(int owner);
+
+    int cardinality();
+
+    // zeruje w words (słowa od firstWord) bity właścicieli spoza wiersza
+    void retainIn(long[] words, int firstWord);
+
+    void forEach(IntConsumer action);
+
+    OwnerRow copy();
+
+    static OwnerRow empty() {
+        return new SparseOwnerRow();
+    }
+}
+
+final class SparseOwnerRow implements OwnerRow {
+
+    private static final int FREE = -1;
+
+    private int[] table = new int[8];
+    private int size;
+    private int maxOwner;
+
+    SparseOwnerRow() {
+        Arrays.fill(table, FREE);
+    }
+
+    @Override
+    public boolean contains(int owner) {
+        int mask = table.length - 1;
+        for (int bucket = mix(owner) & mask; table[bucket] != FREE; bucket = (bucket + 1) & mask) {
+            if (table[bucket] == owner) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public OwnerRow add(int owner) {
+        if (contains(owner)) {
+            return this;
+        }
+        maxOwner = Math.max(maxOwner, owner);
+        // wpis hash-setu przy zapełnieniu do połowy to tyle, co jedno słowo bitsetu
+        if (size + 1 > (maxOwner >>> 6) + 1) {
+            DenseOwnerRow dense = new DenseOwnerRow();
+            forEach(dense::add);
+            return dense.add(owner);
+        }
+        if ((size + 1) * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        insert(owner);
+        size++;
+        return this;
+    }
+
+    // usuwanie z przesunięciem wstecz, żeby nie zostawiać nagrobków
+    @Override
+    public OwnerRow remove(int owner) {
+        int mask = table.length - 1;
+        int bucket = mix(owner) & mask;
+        while (table[bucket] != owner) {
+            if (table[bucket] == FREE) {
+                return this;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        size--;
+        int hole = bucket;
+        for (int next = (hole + 1) & mask; table[next] != FREE; next = (next + 1) & mask) {
+            int home = mix(table[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+        }
+        table[hole] = FREE;
+        return this;
+    }
+
+    @Override
+    public int cardinality() {
+        return size;
+    }
+
+    @Override
+    public void retainIn(long[] words, int firstWord) {
+        for (int i = 0; i < words.length; i++) {
+            for (long word = words[i]; word != 0; word &= word - 1) {
+                int owner = ((firstWord + i) << 6) + Long.numberOfTrailingZeros(word);
+                if (!contains(owner)) {
+                    words[i] &= ~(1L << owner);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        for (int owner : table) {
+            if (owner != FREE) {
+                action.accept(owner);
+            }
+        }
+    }
+
+    @Override
+    public OwnerRow copy() {
+        SparseOwnerRow copy = new SparseOwnerRow();
+        copy.table = table.clone();
+        copy.size = size;
+        copy.maxOwner = maxOwner;
+        return copy;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        Arrays.fill(table, FREE);
+        for (int owner : old) {
+            if (owner != FREE) {
+                insert(owner);
+            }
+        }
+    }
+
+    private void insert(int owner) {
+        int mask = table.length - 1;
+        int bucket = mix(owner) & mask;
+        while (table[bucket] != FREE) {
+            bucket = (bucket + 1) & mask;
+        }
+        table[bucket] = owner;
+    }
+
+    private static int mix(int owner) {
+        int hash = owner * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
+
+final class DenseOwnerRow implements OwnerRow {
+
+    private long[] words = new long[1];
+    private int cardinality;
+
+    @Override
+    public boolean contains(int owner) {
+        int word = owner >>> 6;
+        return word < words.length && (words[word] & (1L << owner)) != 0;
+    }
+
+    @Override
+    public OwnerRow add(int owner) {
+        int word = owner >>> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        if ((words[word] & (1L << owner)) == 0) {
+            words[word] |= 1L << owner;
+            cardinality++;
+        }
+        return this;
+    }
+
+    @Override
+    public OwnerRow remove(int owner) {
+        if (!contains(owner)) {
+            return this;
+        }
+        words[owner >>> 6] &= ~(1L << owner);
+        cardinality--;
+        if (cardinality * 4 > words.length) {
+            return this;
+        }
+        int used = words.length;
+        while (used > 0 && words[used - 1] == 0) {
+            used--;
+        }
+        if (cardinality * 4 <= used) {
+            // od najwyższego słowa, żeby hash-set od początku znał największego właściciela i nie wrócił na bitset
+            OwnerRow sparse = new SparseOwnerRow();
+            for (int i = used - 1; i >= 0; i--) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    sparse = sparse.add((i << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return sparse;
+        }
+        // puste słowa na końcu nie są potrzebne, a bez nich próg sprawdzamy znowu dopiero po kolejnych usunięciach
+        words = Arrays.copyOf(words, Math.max(used, 1));
+        return this;
+    }
+
+    @Override
+    public int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    public void retainIn(long[] candidates, int firstWord) {
+        for (int i = 0; i < candidates.length; i++) {
+            int word = firstWord + i;
+            candidates[i] &= word < words.length ? words[word] : 0;
+        }
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < words.length; i++) {
+            for (long word = words[i]; word != 0; word &= word - 1) {
+                action.accept((i << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    @Override
+    public OwnerRow copy() {
+        DenseOwnerRow copy = new DenseOwnerRow();
+        copy.words = words.clone();
+        copy.cardinality = cardinality;
+        return copy;
+    }
+}
@@ -0,0 +1,112 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+// Czekające żądania z indeksami po fromSlot, toSlot i właścicielu.
+// TTL jest wspólny dla wszystkich, więc kolejność przybycia jest zarazem kolejnością wygasania - wygasłe
+// i wypychane przez limit pojemności zdejmujemy z początku kolejki, bez przeglądania całej puli.
+class PendingRequestPool {
+
+    private final Clock clock;
+    private final Duration timeToLive;
+    private final int capacity;
+    private final LinkedHashMap<ReservationChangeRequest, Instant> expiresAt = new LinkedHashMap<>();
+    private final Map<SlotId, Set<ReservationChangeRequest>> byFromSlot = new HashMap<>();
+    private final Map<SlotId, Set<ReservationChangeRequest>> byToSlot = new HashMap<>();
+    private final Map<OwnerId, Set<ReservationChangeRequest>> byOwner = new HashMap<>();
+
+    PendingRequestPool(Clock clock, Duration timeToLive, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, got " + capacity);
+        }
+        this.clock = clock;
+        this.timeToLive = timeToLive;
+        this.capacity = capacity;
+    }
+
+    static PendingRequestPool unbounded() {
+        return new PendingRequestPool(Clock.systemUTC(), ChronoUnit.FOREVER.getDuration(), Integer.MAX_VALUE);
+    }
+
+    // zwraca najstarsze żądania wypchnięte, żeby zmieścić nowe
+    List<ReservationChangeRequest> add(ReservationChangeRequest request) {
+        if (expiresAt.containsKey(request)) {
+            return List.of();
+        }
+        List<ReservationChangeRequest> evicted = new ArrayList<>();
+        while (expiresAt.size() >= capacity) {
+            ReservationChangeRequest oldest = expiresAt.keySet().iterator().next();
+            remove(oldest);
+            evicted.add(oldest);
+        }
+        expiresAt.put(request, expiryOf(clock.instant()));
+        index(byFromSlot, request.fromSlot(), request);
+        index(byToSlot, request.toSlot(), request);
+        index(byOwner, request.userId(), request);
+        return evicted;
+    }
+
+    boolean remove(ReservationChangeRequest request) {
+        if (expiresAt.remove(request) == null) {
+            return false;
+        }
+        unindex(byFromSlot, request.fromSlot(), request);
+        unindex(byToSlot, request.toSlot(), request);
+        unindex(byOwner, request.userId(), request);
+        return true;
+    }
+
+    List<ReservationChangeRequest> expire() {
+        Instant now = clock.instant();
+        List<ReservationChangeRequest> expired = new ArrayList<>();
+        Iterator<Map.Entry<ReservationChangeRequest, Instant>> oldestFirst = expiresAt.entrySet().iterator();
+        while (oldestFirst.hasNext()) {
+            Map.Entry<ReservationChangeRequest, Instant> entry = oldestFirst.next();
+            if (entry.getValue().isAfter(now)) {
+                break;
+            }
+            expired.add(entry.getKey());
+        }
+        expired.forEach(this::remove);
+        return expired;
+    }
+
+    boolean contains(ReservationChangeRequest request) {
+        return expiresAt.containsKey(request);
+    }
+
+    Set<ReservationChangeRequest> fromSlot(SlotId slotId) {
+        return Collections.unmodifiableSet(byFromSlot.getOrDefault(slotId, Set.of()));
+    }
+
+    Set<ReservationChangeRequest> toSlot(SlotId slotId) {
+        return Collections.unmodifiableSet(byToSlot.getOrDefault(slotId, Set.of()));
+    }
+
+    Set<ReservationChangeRequest> ofOwner(OwnerId owner) {
+        return Collections.unmodifiableSet(byOwner.getOrDefault(owner, Set.of()));
+    }
+
+    int size() {
+        return expiresAt.size();
+    }
+
+    private Instant expiryOf(Instant now) {
+        return Duration.between(now, Instant.MAX).compareTo(timeToLive) <= 0 ? Instant.MAX : now.plus(timeToLive);
+    }
+
+    private static <K> void index(Map<K, Set<ReservationChangeRequest>> index, K key, ReservationChangeRequest request) {
+        index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(request);
+    }
+
+    private static <K> void unindex(Map<K, Set<ReservationChangeRequest>> index, K key, ReservationChangeRequest request) {
+        Set<ReservationChangeRequest> requests = index.get(key);
+        if (requests != null && requests.remove(request) && requests.isEmpty()) {
+            index.remove(key);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+// Front pojedynczych żądań: zbiera je w okna (czasowe albo do maxBatchSize) i każde okno wykonuje jednym batchem.
+// Batche idą po kolei na jednym dedykowanym wątku, więc okna nie ścigają się o te same sloty.
+// Future każdego żądania kończy się wynikiem z samym jego cyklem albo none(), gdy nie trafiło do żadnej zamiany.
+class ReservationBatcher implements AutoCloseable {
+
+    private final Function<List<ReservationChangeRequest>, BatchReservationResult> batch;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reservation-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Window current;
+    private boolean closed;
+
+    ReservationBatcher(BatchReservationUseCase useCase, Duration window, int maxBatchSize) {
+        this(useCase::executeAll, window, maxBatchSize);
+    }
+
+    ReservationBatcher(Function<List<ReservationChangeRequest>, BatchReservationResult> batch, Duration window, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive, got " + maxBatchSize);
+        }
+        this.batch = batch;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    synchronized CompletableFuture<BatchReservationResult> submit(ReservationChangeRequest request) {
+        if (closed) {
+            throw new IllegalStateException("Batcher is closed");
+        }
+        if (current == null) {
+            Window opened = new Window();
+            opened.timer = executor.schedule(() -> flush(opened), window.toNanos(), TimeUnit.NANOSECONDS);
+            current = opened;
+        }
+        CompletableFuture<BatchReservationResult> outcome = current.add(request);
+        if (current.size() >= maxBatchSize) {
+            Window full = current;
+            current = null;
+            full.timer.cancel(false);
+            executor.execute(() -> run(full));
+        }
+        return outcome;
+    }
+
+    // czeka aż wykonają się wszystkie przyjęte żądania, także z niedomkniętego okna
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (current != null) {
+                Window last = current;
+                current = null;
+                last.timer.cancel(false);
+                executor.execute(() -> run(last));
+            }
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(Window window) {
+        synchronized (this) {
+            // okno mogło już zostać wysłane po przekroczeniu rozmiaru
+            if (current != window) {
+                return;
+            }
+            current = null;
+        }
+        run(window);
+    }
+
+    // także błąd (np. OutOfMemoryError) kończy future wszystkich żądań z okna, żeby nikt nie czekał w nieskończoność,
+    // a potem leci dalej do wątku batchera
+    private void run(Window window) {
+        BatchReservationResult result;
+        try {
+            result = batch.apply(window.requests());
+        } catch (Throwable e) {
+            window.failAll(e);
+            throw e;
+        }
+        window.completeAll(result);
+    }
+
+    private static final class Window {
+
+        private final List<ReservationChangeRequest> requests = new ArrayList<>();
+        private final List<CompletableFuture<BatchReservationResult>> outcomes = new ArrayList<>();
+        private ScheduledFuture<?> timer;
+
+        CompletableFuture<BatchReservationResult> add(ReservationChangeRequest request) {
+            CompletableFuture<BatchReservationResult> outcome = new CompletableFuture<>();
+            requests.add(request);
+            outcomes.add(outcome);
+            return outcome;
+        }
+
+        int size() {
+            return requests.size();
+        }
+
+        List<ReservationChangeRequest> requests() {
+            return List.copyOf(requests);
+        }
+
+        void completeAll(BatchReservationResult result) {
+            Map<ReservationChangeRequest, BatchReservationResult.ExecutedCycle> cycleOf = new HashMap<>();
+            for (BatchReservationResult.ExecutedCycle cycle : result.cycles()) {
+                cycle.requests().forEach(request -> cycleOf.putIfAbsent(request, cycle));
+            }
+            for (int i = 0; i < requests.size(); i++) {
+                // ten sam request wysłany dwa razy w jednym oknie wykonuje się raz
+                BatchReservationResult.ExecutedCycle cycle = cycleOf.remove(requests.get(i));
+                outcomes.get(i).complete(cycle == null
+                        ? BatchReservationResult.none()
+                        : BatchReservationResult.success(List.of(cycle)));
+            }
+        }
+
+        void failAll(Throwable failure) {
+            outcomes.forEach(outcome -> outcome.completeExceptionally(failure));
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import com.softwarearchetypes.graphs.cycles.BatchReservationResult.ExecutedCycle;
+import com.softwarearchetypes.graphs.cycles.math.Edge;
+import com.softwarearchetypes.graphs.cycles.math.IncrementalCycleDetector;
+import com.softwarearchetypes.graphs.cycles.math.Path;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Strumieniowa giełda zamian: żądania czekają w puli i w grafie, zamiana wykonuje się gdy tylko domknie się cykl.
+// Nowe żądanie sprawdza tylko swoje otoczenie w grafie; wygasłe i wypchnięte z pełnej puli znikają też z grafu.
+// Z Eligibility żądanie trafia do grafu tylko gdy przekazanie między obecnymi właścicielami slotów jest dozwolone,
+// pozostałe czekają zaparkowane pod swoją parą właścicieli. Zmiana uprawnień albo właścicieli po zamianie
+// przelicza wyłącznie żądania z dotkniętej pary lub dotkniętych slotów.
+// Z puli znikają tylko żądania faktycznie wykonane albo takie, których zgłaszający stracił już slot;
+// cykl przegrany z innymi zapisami czeka w całości i jest ponawiany przy kolejnym submit.
+class ReservationExchange implements EligibilityListener {
+
+    private final IncrementalCycleDetector<SlotId, ReservationChangeRequest> pending = new IncrementalCycleDetector<>();
+    private final PendingRequestPool pool;
+    private final SlotRepository slotRepository;
+    private final CycleCommitter committer;
+    private final RetryPolicy retryPolicy;
+    private final Eligibility eligibility;
+
+    private final Map<ReservationChangeRequest, OwnerEdge> ownerEdges = new HashMap<>();
+    private final Map<OwnerEdge, Set<ReservationChangeRequest>> byOwnerEdge = new HashMap<>();
+    private final Set<ReservationChangeRequest> parked = new HashSet<>();
+    // domknęły cykl, którego commit przegrał wszystkie próby - krawędź nie może wejść do grafu, więc czekają tutaj
+    private final Set<ReservationChangeRequest> deferred = new LinkedHashSet<>();
+
+    ReservationExchange(SlotRepository slotRepository) {
+        this(slotRepository, RetryPolicy.defaultPolicy());
+    }
+
+    ReservationExchange(SlotRepository slotRepository, RetryPolicy retryPolicy) {
+        this(slotRepository, retryPolicy, null, PendingRequestPool.unbounded());
+    }
+
+    ReservationExchange(SlotRepository slotRepository, Eligibility eligibility) {
+        this(slotRepository, RetryPolicy.defaultPolicy(), eligibility, PendingRequestPool.unbounded());
+    }
+
+    ReservationExchange(SlotRepository slotRepository, PendingRequestPool pool) {
+        this(slotRepository, RetryPolicy.defaultPolicy(), null, pool);
+    }
+
+    ReservationExchange(SlotRepository slotRepository, Eligibility eligibility, PendingRequestPool pool) {
+        this(slotRepository, RetryPolicy.defaultPolicy(), eligibility, pool);
+    }
+
+    private ReservationExchange(SlotRepository slotRepository, RetryPolicy retryPolicy, Eligibility eligibility, PendingRequestPool pool) {
+        this.slotRepository = slotRepository;
+        this.committer = new CycleCommitter(slotRepository);
+        this.retryPolicy = retryPolicy;
+        this.eligibility = eligibility;
+        this.pool = pool;
+        if (eligibility != null) {
+            eligibility.subscribe(this);
+        }
+    }
+
+    synchronized BatchReservationResult submit(ReservationChangeRequest request) {
+        pool.expire().forEach(this::forget);
+        List<ExecutedCycle> cycles = new ArrayList<>();
+        for (ReservationChangeRequest retried : List.copyOf(deferred)) {
+            // wcześniejsza zamiana w tej pętli mogła już wykonać albo zaparkować żądanie
+            if (deferred.remove(retried)) {
+                cycles.addAll(activate(retried).cycles());
+            }
+        }
+        cycles.addAll(accept(request).cycles());
+        return cycles.isEmpty() ? BatchReservationResult.none() : BatchReservationResult.success(cycles);
+    }
+
+    private BatchReservationResult accept(ReservationChangeRequest request) {
+        if (pool.contains(request)) {
+            return BatchReservationResult.none();
+        }
+        if (eligibility == null) {
+            pool.add(request).forEach(this::forget);
+            return activate(request);
+        }
+        Map<SlotId, Slot> slots = slotRepository.findAll(new HashSet<>(List.of(request.fromSlot(), request.toSlot())));
+        if (!slots.containsKey(request.fromSlot()) || !slots.containsKey(request.toSlot())) {
+            return BatchReservationResult.none();
+        }
+        pool.add(request).forEach(this::forget);
+        OwnerEdge edge = OwnerEdge.of(request, slots);
+        index(request, edge);
+        if (!edge.isEligible(eligibility)) {
+            parked.add(request);
+            return BatchReservationResult.none();
+        }
+        return activate(request);
+    }
+
+    synchronized boolean withdraw(ReservationChangeRequest request) {
+        if (!pool.remove(request)) {
+            return false;
+        }
+        forget(request);
+        return true;
+    }
+
+    synchronized int withdrawAll(OwnerId owner) {
+        List<ReservationChangeRequest> requests = List.copyOf(pool.ofOwner(owner));
+        requests.forEach(this::withdraw);
+        return requests.size();
+    }
+
+    synchronized int pendingCount() {
+        pool.expire().forEach(this::forget);
+        return pool.size();
+    }
+
+    @Override
+    public synchronized void transferEligibilityChanged(OwnerId from, OwnerId to, boolean eligible) {
+        OwnerEdge changed = new OwnerEdge(from, to);
+        Set<ReservationChangeRequest> affected = byOwnerEdge.get(changed);
+        if (affected == null) {
+            return;
+        }
+        for (ReservationChangeRequest request : List.copyOf(affected)) {
+            // wcześniejsza zamiana w tej pętli mogła już wykonać żądanie albo zmienić jego parę właścicieli
+            if (!changed.equals(ownerEdges.get(request))) {
+                continue;
+            }
+            if (eligible && parked.remove(request)) {
+                activate(request);
+            } else if (!eligible && !parked.contains(request)) {
+                park(request);
+            }
+        }
+    }
+
+    // nie rzuca StaleSlotException - wołane także z powiadomień Eligibility, które nie mogą się urwać w połowie
+    private BatchReservationResult activate(ReservationChangeRequest request) {
+        Optional<Path<SlotId, ReservationChangeRequest>> cycle = pending.addEdge(request.fromSlot(), request.toSlot(), request);
+        if (cycle.isEmpty()) {
+            return BatchReservationResult.none();
+        }
+        BatchReservationResult result;
+        try {
+            result = retryPolicy.execute(() -> committer.commitOwned(List.of(cycle.get())));
+        } catch (StaleSlotException e) {
+            deferred.add(request);
+            return BatchReservationResult.none();
+        }
+        if (result.executedRequests().isEmpty()) {
+            return dropNoLongerOwned(cycle.get(), request);
+        }
+        Set<SlotId> touchedSlots = new HashSet<>();
+        for (Edge<SlotId, ReservationChangeRequest> edge : cycle.get().edges()) {
+            pool.remove(edge.property());
+            forget(edge.property());
+            touchedSlots.add(edge.from().property());
+        }
+        if (eligibility != null) {
+            ownersChanged(touchedSlots);
+        }
+        return result;
+    }
+
+    // commit odrzucił cykl, bo ktoś ze zgłaszających nie ma już swojego slotu - tylko jego żądanie odpada,
+    // reszta zostaje w puli, a domykające próbuje wejść do grafu jeszcze raz
+    private BatchReservationResult dropNoLongerOwned(Path<SlotId, ReservationChangeRequest> cycle, ReservationChangeRequest closing) {
+        List<ReservationChangeRequest> requests = cycle.edges().stream().map(Edge::property).toList();
+        Map<SlotId, Slot> slots = slotRepository.findAll(requests.stream().map(ReservationChangeRequest::fromSlot).collect(Collectors.toSet()));
+        List<ReservationChangeRequest> notOwned = requests.stream()
+                .filter(request -> slots.get(request.fromSlot()) == null || !slots.get(request.fromSlot()).getOwner().equals(request.userId()))
+                .toList();
+        if (notOwned.isEmpty()) {
+            // właściciel zdążył wrócić między commitem a odczytem - traktujemy to jak przegraną z innym zapisem
+            deferred.add(closing);
+            return BatchReservationResult.none();
+        }
+        for (ReservationChangeRequest request : notOwned) {
+            pool.remove(request);
+            forget(request);
+        }
+        return notOwned.contains(closing) ? BatchReservationResult.none() : activate(closing);
+    }
+
+    // po zamianie zmienili się właściciele slotów, więc czekające żądania z tymi slotami mają nową parę właścicieli
+    private void ownersChanged(Set<SlotId> touchedSlots) {
+        Set<ReservationChangeRequest> affected = new LinkedHashSet<>();
+        Set<SlotId> slotIds = new HashSet<>();
+        for (SlotId slotId : touchedSlots) {
+            for (ReservationChangeRequest request : union(pool.fromSlot(slotId), pool.toSlot(slotId))) {
+                affected.add(request);
+                slotIds.add(request.fromSlot());
+                slotIds.add(request.toSlot());
+            }
+        }
+        if (affected.isEmpty()) {
+            return;
+        }
+        Map<SlotId, Slot> slots = slotRepository.findAll(slotIds);
+        List<ReservationChangeRequest> unparked = new ArrayList<>();
+        for (ReservationChangeRequest request : affected) {
+            if (!ownerEdges.containsKey(request)) {
+                continue;
+            }
+            OwnerEdge edge = OwnerEdge.of(request, slots);
+            unindex(request);
+            index(request, edge);
+            boolean eligible = edge.isEligible(eligibility);
+            if (eligible && parked.contains(request)) {
+                unparked.add(request);
+            } else if (!eligible && !parked.contains(request)) {
+                park(request);
+            }
+        }
+        // aktywacja może wykonać kolejną zamianę i przeindeksować żądania już na świeżych właścicielach,
+        // więc odpalamy je dopiero po pętli, a przed każdą sprawdzamy, czy jej para nadal jest dozwolona
+        for (ReservationChangeRequest request : unparked) {
+            OwnerEdge edge = ownerEdges.get(request);
+            if (edge != null && edge.isEligible(eligibility) && parked.remove(request)) {
+                activate(request);
+            }
+        }
+    }
+
+    // żądanie opuściło pulę (wykonane, wycofane, wygasłe albo wypchnięte) - znika z grafu i indeksów
+    private void forget(ReservationChangeRequest request) {
+        if (!parked.remove(request) && !deferred.remove(request)) {
+            pending.removeEdge(request.fromSlot(), request.toSlot(), request);
+        }
+        unindex(request);
+    }
+
+    private void park(ReservationChangeRequest request) {
+        if (!deferred.remove(request)) {
+            pending.removeEdge(request.fromSlot(), request.toSlot(), request);
+        }
+        parked.add(request);
+    }
+
+    private void index(ReservationChangeRequest request, OwnerEdge edge) {
+        ownerEdges.put(request, edge);
+        byOwnerEdge.computeIfAbsent(edge, key -> new HashSet<>()).add(request);
+    }
+
+    private void unindex(ReservationChangeRequest request) {
+        OwnerEdge edge = ownerEdges.remove(request);
+        if (edge == null) {
+            return;
+        }
+        Set<ReservationChangeRequest> requests = byOwnerEdge.get(edge);
+        if (requests != null && requests.remove(request) && requests.isEmpty()) {
+            byOwnerEdge.remove(edge);
+        }
+    }
+
+    private static Set<ReservationChangeRequest> union(Set<ReservationChangeRequest> first, Set<ReservationChangeRequest> second) {
+        Set<ReservationChangeRequest> union = new LinkedHashSet<>(first);
+        union.addAll(second);
+        return union;
+    }
+
+    private record OwnerEdge(OwnerId from, OwnerId to) {
+
+        static OwnerEdge of(ReservationChangeRequest request, Map<SlotId, Slot> slots) {
+            return new OwnerEdge(slots.get(request.fromSlot()).getOwner(), slots.get(request.toSlot()).getOwner());
+        }
+
+        boolean isEligible(Eligibility eligibility) {
+            return eligibility.isTransferEligible(from, to);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.util.List;
+
+// owner oddaje offeredSlot za pierwszy osiągalny slot z acceptableSlots (od najbardziej pożądanego)
+record ReservationPreference(SlotId offeredSlot, OwnerId owner, List<SlotId> acceptableSlots) {
+
+    ReservationChangeRequest toRequest(SlotId acquiredSlot) {
+        return new ReservationChangeRequest(offeredSlot, acquiredSlot, owner);
+    }
+}
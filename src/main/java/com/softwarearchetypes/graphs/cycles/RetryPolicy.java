@@ -0,0 +1,33 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.util.function.Supplier;
+
+record RetryPolicy(int maxAttempts) {
+
+    RetryPolicy {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required");
+        }
+    }
+
+    static RetryPolicy attempts(int maxAttempts) {
+        return new RetryPolicy(maxAttempts);
+    }
+
+    static RetryPolicy defaultPolicy() {
+        return new RetryPolicy(3);
+    }
+
+    // każda próba musi sama przeładować stan - StaleSlotException gwarantuje że nic nie zostało zapisane
+    <R> R execute(Supplier<R> attempt) {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                return attempt.get();
+            } catch (StaleSlotException e) {
+                if (attemptNumber >= maxAttempts) {
+                    throw e;
+                }
+            }
+        }
+    }
+}
@@ -3,16 +3,26 @@ package com.softwarearchetypes.graphs.cycles;
 class Slot {
     private final SlotId slotId;
     private OwnerId owner;
+    private long version;
 
     Slot(SlotId slotId, OwnerId owner) {
+        this(slotId, owner, 0);
+    }
+
+    Slot(SlotId slotId, OwnerId owner, long version) {
         this.slotId = slotId;
         this.owner = owner;
+        this.version = version;
     }
 
     static Slot create(SlotId slotId, OwnerId owner) {
         return new Slot(slotId, owner);
     }
 
+    Slot copy() {
+        return new Slot(slotId, owner, version);
+    }
+
     void release() {
         this.owner = OwnerId.empty();
     }
@@ -28,4 +38,12 @@ class Slot {
     SlotId id() {
         return slotId;
     }
+
+    long version() {
+        return version;
+    }
+
+    void versionSaved() {
+        this.version++;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,309 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+// Dziennik tylko do dopisywania: ramka [długość][crc32][sloty] na partię.
+// Commity czekające na trwałość dzielą jeden fsync - pierwszy z nich (lider) wymusza zapis
+// wszystkiego, co zostało dopisane do tej pory, a pozostali tylko czekają na jego wynik.
+// Migawka ma ten sam format ramek, ale sloty są w niej posortowane po id i pocięte na ramki
+// po SNAPSHOT_FRAME_SLOTS, więc zarówno jej zapis, jak i odczyt idą strumieniowo.
+final class SlotJournal implements AutoCloseable {
+
+    static final int SNAPSHOT_FRAME_SLOTS = 4096;
+
+    private static final int HEADER_SIZE = 8;
+
+    private final Path file;
+    private FileChannel channel;
+    private long appended;
+    private long durable;
+    private boolean flushing;
+
+    private SlotJournal(Path file, FileChannel channel, long validLength) {
+        this.file = file;
+        this.channel = channel;
+        this.appended = validLength;
+        this.durable = validLength;
+    }
+
+    // oddaje wszystkie całe ramki; urwany ogon po awarii jest obcinany
+    static SlotJournal open(Path file, Consumer<List<Slot>> replay) {
+        try {
+            FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE);
+            long validLength = readFrames(channel, replay);
+            channel.truncate(validLength);
+            channel.position(validLength);
+            return new SlotJournal(file, channel, validLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void readSnapshot(Path file, Consumer<List<Slot>> replay) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            readFrames(channel, replay);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // scala migawkę z odłożonym dziennikiem w nową migawkę: plik tymczasowy, fsync, podmiana atomowa,
+    // na końcu usunięcie dziennika. W pamięci jest tylko to, co przyszło z dziennika, i jedna ramka migawki.
+    // Przerwane w dowolnym miejscu można powtórzyć - wygrywa wyższa wersja slotu, przy równej ta z dziennika.
+    static void compact(Path snapshot, Path retiredJournal) {
+        if (!Files.exists(retiredJournal)) {
+            return;
+        }
+        TreeMap<String, Slot> journaled = new TreeMap<>();
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(retiredJournal, READ)) {
+                readFrames(channel, frame -> frame.forEach(slot -> journaled.merge(slot.id().value(), slot, SlotJournal::newer)));
+            }
+            try (FileChannel out = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING);
+                 FileChannel in = Files.exists(snapshot) ? FileChannel.open(snapshot, READ) : null) {
+                SnapshotCursor previous = new SnapshotCursor(in);
+                Iterator<Slot> fromJournal = journaled.values().iterator();
+                Slot nextFromJournal = fromJournal.hasNext() ? fromJournal.next() : null;
+                List<Slot> chunk = new ArrayList<>(SNAPSHOT_FRAME_SLOTS);
+                while (previous.peek() != null || nextFromJournal != null) {
+                    int order = previous.peek() == null ? 1
+                            : nextFromJournal == null ? -1
+                            : previous.peek().id().value().compareTo(nextFromJournal.id().value());
+                    if (order < 0) {
+                        chunk.add(previous.poll());
+                    } else {
+                        chunk.add(order == 0 ? newer(previous.poll(), nextFromJournal) : nextFromJournal);
+                        nextFromJournal = fromJournal.hasNext() ? fromJournal.next() : null;
+                    }
+                    if (chunk.size() == SNAPSHOT_FRAME_SLOTS) {
+                        write(out, frame(chunk));
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    write(out, frame(chunk));
+                }
+                out.force(true);
+            }
+            Files.move(temporary, snapshot, ATOMIC_MOVE, REPLACE_EXISTING);
+            Files.delete(retiredJournal);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // dopisuje ramkę bez fsync i zwraca pozycję, na której trwałość trzeba poczekać
+    synchronized long append(Collection<Slot> slots) {
+        ByteBuffer frame = frame(slots);
+        try {
+            appended += write(channel, frame);
+            return appended;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void awaitDurable(long position) {
+        while (true) {
+            long target;
+            synchronized (this) {
+                while (flushing && durable < position) {
+                    waitForLeader();
+                }
+                if (durable >= position) {
+                    return;
+                }
+                flushing = true;
+                target = appended;
+            }
+            boolean flushed = false;
+            try {
+                channel.force(false);
+                flushed = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                synchronized (this) {
+                    if (flushed) {
+                        durable = Math.max(durable, target);
+                    }
+                    flushing = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    // odkłada bieżący plik do kompaktowania i zaczyna pusty; pozycje są logiczne, więc rosną dalej.
+    // Nieskompaktowany odłożony dziennik to jedyna kopia jego zapisów, więc nigdy go nie nadpisujemy.
+    synchronized void rotate(Path retired) {
+        while (flushing) {
+            waitForLeader();
+        }
+        if (Files.exists(retired)) {
+            throw new IllegalStateException("retired journal " + retired + " has not been compacted yet");
+        }
+        try {
+            channel.force(false);
+            channel.close();
+            durable = appended;
+            Files.move(file, retired, ATOMIC_MOVE);
+            channel = FileChannel.open(file, CREATE, READ, WRITE, TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void waitForLeader() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for journal flush", e);
+        }
+    }
+
+    private static Slot newer(Slot current, Slot next) {
+        return next.version() >= current.version() ? next : current;
+    }
+
+    private static ByteBuffer frame(Collection<Slot> slots) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(slots.size());
+            for (Slot slot : slots) {
+                out.writeUTF(slot.id().value());
+                out.writeUTF(slot.getOwner().value());
+                out.writeLong(slot.version());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(frame.array(), HEADER_SIZE, frame.capacity() - HEADER_SIZE);
+        frame.putInt(0, frame.capacity() - HEADER_SIZE);
+        frame.putInt(4, (int) crc.getValue());
+        return frame;
+    }
+
+    private static long readFrames(FileChannel channel, Consumer<List<Slot>> replay) throws IOException {
+        FrameReader frames = new FrameReader(channel);
+        for (List<Slot> frame = frames.next(); frame != null; frame = frames.next()) {
+            replay.accept(frame);
+        }
+        return frames.position;
+    }
+
+    private static List<Slot> decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = in.readInt();
+        List<Slot> slots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SlotId slotId = SlotId.of(in.readUTF());
+            OwnerId owner = OwnerId.of(in.readUTF());
+            slots.add(new Slot(slotId, owner, in.readLong()));
+        }
+        return slots;
+    }
+
+    private static int write(FileChannel channel, ByteBuffer frame) throws IOException {
+        int written = 0;
+        while (frame.hasRemaining()) {
+            written += channel.write(frame);
+        }
+        return written;
+    }
+
+    // kolejne całe ramki z pliku; null na końcu albo na pierwszej urwanej lub uszkodzonej ramce
+    private static final class FrameReader {
+
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        private long position;
+
+        private FrameReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        List<Slot> next() throws IOException {
+            if (position + HEADER_SIZE > size) {
+                return null;
+            }
+            header.clear();
+            channel.read(header, position);
+            int length = header.getInt(0);
+            if (length < 4 || position + HEADER_SIZE + length > size) {
+                return null;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != header.getInt(4)) {
+                return null;
+            }
+            position += HEADER_SIZE + length;
+            return decode(payload.array());
+        }
+    }
+
+    // sloty starej migawki po jednym, z co najwyżej jedną ramką w pamięci
+    private static final class SnapshotCursor {
+
+        private final FrameReader frames;
+        private List<Slot> frame = List.of();
+        private int index;
+
+        private SnapshotCursor(FileChannel channel) throws IOException {
+            this.frames = channel == null ? null : new FrameReader(channel);
+        }
+
+        Slot peek() throws IOException {
+            while (index == frame.size()) {
+                List<Slot> next = frames == null ? null : frames.next();
+                if (next == null) {
+                    return null;
+                }
+                frame = next;
+                index = 0;
+            }
+            return frame.get(index);
+        }
+
+        Slot poll() throws IOException {
+            Slot slot = peek();
+            index++;
+            return slot;
+        }
+    }
+}
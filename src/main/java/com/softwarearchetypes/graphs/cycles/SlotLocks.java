@@ -0,0 +1,45 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Blokady paskowane po hashu SlotId: rozłączne batche nie czekają na siebie,
+// stripe'y brane rosnąco więc nie ma zakleszczeń
+class SlotLocks {
+
+    private final ReentrantLock[] stripes;
+
+    SlotLocks(int stripeCount) {
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    <R> R withLocks(Collection<SlotId> slotIds, Supplier<R> action) {
+        TreeSet<Integer> needed = new TreeSet<>();
+        for (SlotId slotId : slotIds) {
+            needed.add(stripeOf(slotId));
+        }
+        List<ReentrantLock> acquired = new ArrayList<>(needed.size());
+        try {
+            for (int stripe : needed) {
+                stripes[stripe].lock();
+                acquired.add(stripes[stripe]);
+            }
+            return action.get();
+        } finally {
+            for (int i = acquired.size() - 1; i >= 0; i--) {
+                acquired.get(i).unlock();
+            }
+        }
+    }
+
+    private int stripeOf(SlotId slotId) {
+        return Math.floorMod(slotId.hashCode(), stripes.length);
+    }
+}
@@ -1,7 +1,9 @@
 package com.softwarearchetypes.graphs.cycles;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -12,6 +14,7 @@ interface SlotRepository {
 
     void save(Slot slot);
 
+    // compare-and-set: wszystkie albo żaden; rzuca StaleSlotException gdy któraś wersja jest nieaktualna
     void saveAll(Collection<Slot> values);
 
     Map<SlotId, Slot> findAll(Set<SlotId> allSlotIds);
@@ -20,29 +23,46 @@ interface SlotRepository {
 class InMemorySlotRepository implements SlotRepository {
 
     private final Map<SlotId, Slot> slots = new ConcurrentHashMap<>();
+    private final SlotLocks locks = new SlotLocks(64);
 
     @Override
     public Optional<Slot> findById(SlotId slotId) {
-        return Optional.ofNullable(slots.get(slotId));
+        return Optional.ofNullable(slots.get(slotId)).map(Slot::copy);
     }
 
     @Override
     public void save(Slot slot) {
-        slots.put(slot.id(), slot);
+        slots.put(slot.id(), slot.copy());
     }
 
     public Map<SlotId, Slot> findAll(Set<SlotId> allSlotIds) {
         return allSlotIds.stream()
-                .collect(Collectors.toMap(
-                        slotId -> slotId,
-                        slotId -> {
-                            Slot original = findById(slotId).orElse(null);
-                            // Zwracaj kopię bo to repo w pamieci
-                            return original != null ? Slot.create(original.id(), original.getOwner()) : null;
-                        }));
+                .map(slots::get)
+                .filter(Objects::nonNull)
+                // Zwracaj kopię bo to repo w pamieci
+                .collect(Collectors.toMap(Slot::id, Slot::copy));
     }
 
-    public void saveAll(Collection<Slot> slots) {
-        slots.forEach(this::save);
+    public void saveAll(Collection<Slot> toSave) {
+        List<SlotId> ids = toSave.stream().map(Slot::id).toList();
+        locks.withLocks(ids, () -> {
+            Set<SlotId> stale = toSave.stream()
+                    .filter(slot -> storedVersion(slot.id()) != slot.version())
+                    .map(Slot::id)
+                    .collect(Collectors.toSet());
+            if (!stale.isEmpty()) {
+                throw new StaleSlotException(stale);
+            }
+            for (Slot slot : toSave) {
+                slot.versionSaved();
+                slots.put(slot.id(), slot.copy());
+            }
+            return null;
+        });
+    }
+
+    private long storedVersion(SlotId slotId) {
+        Slot stored = slots.get(slotId);
+        return stored == null ? 0 : stored.version();
     }
 }
\ No newline at end of file
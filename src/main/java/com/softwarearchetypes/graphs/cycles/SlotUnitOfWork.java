@@ -0,0 +1,69 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.util.*;
+
+// Jednostka pracy na czas jednego batcha: każdy slot ładowany raz, zapisywane tylko zmienione
+class SlotUnitOfWork {
+
+    private final SlotRepository slotRepository;
+    private final Map<SlotId, Slot> loaded = new HashMap<>();
+    private final Map<SlotId, OwnerId> ownersAtLoad = new HashMap<>();
+    private final Set<SlotId> missing = new HashSet<>();
+
+    SlotUnitOfWork(SlotRepository slotRepository) {
+        this.slotRepository = slotRepository;
+    }
+
+    Map<SlotId, Slot> load(Set<SlotId> slotIds) {
+        Set<SlotId> notYetLoaded = new HashSet<>();
+        for (SlotId slotId : slotIds) {
+            if (!loaded.containsKey(slotId) && !missing.contains(slotId)) {
+                notYetLoaded.add(slotId);
+            }
+        }
+        if (!notYetLoaded.isEmpty()) {
+            Map<SlotId, Slot> fetched = slotRepository.findAll(notYetLoaded);
+            for (SlotId slotId : notYetLoaded) {
+                Slot slot = fetched.get(slotId);
+                if (slot == null) {
+                    missing.add(slotId);
+                } else {
+                    loaded.put(slotId, slot);
+                    ownersAtLoad.put(slotId, slot.getOwner());
+                }
+            }
+        }
+        Map<SlotId, Slot> result = new HashMap<>();
+        for (SlotId slotId : slotIds) {
+            result.put(slotId, loaded.get(slotId));
+        }
+        return result;
+    }
+
+    // wszystko, co ta jednostka pracy przeczytała, także sloty których nie było
+    Set<SlotId> loadedSlotIds() {
+        Set<SlotId> read = new HashSet<>(loaded.keySet());
+        read.addAll(missing);
+        return read;
+    }
+
+    List<Slot> changedSlots() {
+        List<Slot> changed = new ArrayList<>();
+        for (Slot slot : loaded.values()) {
+            if (!slot.getOwner().equals(ownersAtLoad.get(slot.id()))) {
+                changed.add(slot);
+            }
+        }
+        return changed;
+    }
+
+    void commit() {
+        List<Slot> changed = changedSlots();
+        if (!changed.isEmpty()) {
+            slotRepository.saveAll(changed);
+        }
+        for (Slot slot : changed) {
+            ownersAtLoad.put(slot.id(), slot.getOwner());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import java.util.Set;
+
+class StaleSlotException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Set<SlotId> staleSlots;
+
+    StaleSlotException(Set<SlotId> staleSlots) {
+        super("Slots were modified concurrently: " + staleSlots);
+        this.staleSlots = Set.copyOf(staleSlots);
+    }
+
+    // po deserializacji zbioru już nie ma
+    Set<SlotId> staleSlots() {
+        return staleSlots == null ? Set.of() : staleSlots;
+    }
+}
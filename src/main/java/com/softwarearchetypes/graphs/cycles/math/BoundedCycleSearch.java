@@ -0,0 +1,190 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import java.util.Arrays;
+
+// Shortest cycle through a node, not longer than a given bound: BFS from the node forward over outgoing edges
+// and backward over incoming edges, always expanding the smaller frontier. Two frontiers of depth k/2 touch far
+// fewer nodes than one of depth k, and nothing beyond the bound is ever visited.
+// Only nodes of the start node's strongly connected component take part; removed nodes are skipped.
+final class BoundedCycleSearch {
+
+    private static final int NONE = -1;
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] sources;
+    private final int[] reverseOffsets;
+    private final int[] reverseEdges;
+    private final StronglyConnectedComponents components;
+    private final boolean[] removed;
+
+    private final int[] seenForward;
+    private final int[] seenBackward;
+    private final int[] distanceForward;
+    private final int[] distanceBackward;
+    private final int[] parentEdge;
+    private final int[] nextEdge;
+    private int round;
+
+    BoundedCycleSearch(int[] offsets, int[] targets) {
+        int nodeCount = offsets.length - 1;
+        int edgeCount = targets.length;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.sources = new int[edgeCount];
+        this.reverseOffsets = new int[nodeCount + 1];
+        this.reverseEdges = new int[edgeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                sources[edge] = node;
+                reverseOffsets[targets[edge] + 1]++;
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            reverseOffsets[node + 1] += reverseOffsets[node];
+        }
+        int[] filled = Arrays.copyOf(reverseOffsets, nodeCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            reverseEdges[filled[targets[edge]]++] = edge;
+        }
+        this.components = StronglyConnectedComponents.of(offsets, targets);
+        this.removed = new boolean[nodeCount];
+        this.seenForward = new int[nodeCount];
+        this.seenBackward = new int[nodeCount];
+        this.distanceForward = new int[nodeCount];
+        this.distanceBackward = new int[nodeCount];
+        this.parentEdge = new int[nodeCount];
+        this.nextEdge = new int[nodeCount];
+    }
+
+    boolean isOnCycle(int node) {
+        return components.size(components.componentOf(node)) > 1
+                || Arrays.binarySearch(targets, offsets[node], offsets[node + 1], node) >= 0;
+    }
+
+    int sourceOf(int edge) {
+        return sources[edge];
+    }
+
+    void remove(int[] cycle) {
+        for (int edge : cycle) {
+            removed[sources[edge]] = true;
+        }
+    }
+
+    boolean touchesRemoved(int[] cycle) {
+        for (int edge : cycle) {
+            if (removed[sources[edge]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // edges of the shortest cycle through start in path order, or null when there is none within maxLength
+    int[] shortestCycleThrough(int start, int maxLength) {
+        if (removed[start] || !isOnCycle(start)) {
+            return null;
+        }
+        round++;
+        int component = components.componentOf(start);
+        visitForward(start, 0, NONE);
+        visitBackward(start, 0, NONE);
+        int[] forward = {start};
+        int[] backward = {start};
+        int forwardSize = 1;
+        int backwardSize = 1;
+        int forwardDepth = 0;
+        int backwardDepth = 0;
+
+        // a meeting is an edge from a node reached forward to a node reached backward
+        int best = Integer.MAX_VALUE;
+        int meetingEdge = NONE;
+        while (forwardDepth + backwardDepth < Math.min(maxLength, best) && forwardSize > 0 && backwardSize > 0) {
+            int[] next = new int[16];
+            int nextSize = 0;
+            if (forwardSize <= backwardSize) {
+                for (int i = 0; i < forwardSize; i++) {
+                    int node = forward[i];
+                    for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                        int neighbor = targets[edge];
+                        if (isBlocked(neighbor, component)) {
+                            continue;
+                        }
+                        if (seenBackward[neighbor] == round && forwardDepth + 1 + distanceBackward[neighbor] < best) {
+                            best = forwardDepth + 1 + distanceBackward[neighbor];
+                            meetingEdge = edge;
+                        }
+                        if (seenForward[neighbor] != round) {
+                            visitForward(neighbor, forwardDepth + 1, edge);
+                            next = push(next, nextSize++, neighbor);
+                        }
+                    }
+                }
+                forward = next;
+                forwardSize = nextSize;
+                forwardDepth++;
+            } else {
+                for (int i = 0; i < backwardSize; i++) {
+                    int node = backward[i];
+                    for (int reverse = reverseOffsets[node]; reverse < reverseOffsets[node + 1]; reverse++) {
+                        int edge = reverseEdges[reverse];
+                        int neighbor = sources[edge];
+                        if (isBlocked(neighbor, component)) {
+                            continue;
+                        }
+                        if (seenForward[neighbor] == round && distanceForward[neighbor] + 1 + backwardDepth < best) {
+                            best = distanceForward[neighbor] + 1 + backwardDepth;
+                            meetingEdge = edge;
+                        }
+                        if (seenBackward[neighbor] != round) {
+                            visitBackward(neighbor, backwardDepth + 1, edge);
+                            next = push(next, nextSize++, neighbor);
+                        }
+                    }
+                }
+                backward = next;
+                backwardSize = nextSize;
+                backwardDepth++;
+            }
+        }
+        return best <= maxLength ? cycleThrough(start, meetingEdge, best) : null;
+    }
+
+    private int[] cycleThrough(int start, int meetingEdge, int length) {
+        int[] cycle = new int[length];
+        int position = distanceForward[sources[meetingEdge]];
+        cycle[position] = meetingEdge;
+        for (int node = sources[meetingEdge], i = position - 1; node != start; node = sources[parentEdge[node]], i--) {
+            cycle[i] = parentEdge[node];
+        }
+        for (int node = targets[meetingEdge], i = position + 1; node != start; node = targets[nextEdge[node]], i++) {
+            cycle[i] = nextEdge[node];
+        }
+        return cycle;
+    }
+
+    private boolean isBlocked(int node, int component) {
+        return removed[node] || components.componentOf(node) != component;
+    }
+
+    private void visitForward(int node, int distance, int edge) {
+        seenForward[node] = round;
+        distanceForward[node] = distance;
+        parentEdge[node] = edge;
+    }
+
+    private void visitBackward(int node, int distance, int edge) {
+        seenBackward[node] = round;
+        distanceBackward[node] = distance;
+        nextEdge[node] = edge;
+    }
+
+    private static int[] push(int[] nodes, int size, int node) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+        }
+        nodes[size] = node;
+        return nodes;
+    }
+}
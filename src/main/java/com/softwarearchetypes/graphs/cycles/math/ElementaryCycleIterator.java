@@ -0,0 +1,186 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Johnson's algorithm turned inside out: the circuit recursion runs on explicit stacks and stops after every
+// cycle it finds, so the caller pulls cycles one at a time. Roots are taken in node id order; for each root
+// only its strongly connected component among nodes >= root is searched. Apart from the current path,
+// memory is bounded by the graph itself (blocked flags and the B lists).
+final class ElementaryCycleIterator<T, P> implements Iterator<Path<T, P>> {
+
+    private final FrozenGraph<T, P> graph;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int nodeCount;
+
+    private final boolean[] blocked;
+    private final int[][] blockedBy;
+    private final int[] blockedBySize;
+    private final int[] stack;
+    private final int[] cursor;
+    private final int[] stackEdge;
+    private final boolean[] found;
+    private int depth;
+
+    private int nextRoot;
+    private int root;
+    private int component;
+    private StronglyConnectedComponents components;
+    private Path<T, P> next;
+    private boolean exhausted;
+
+    ElementaryCycleIterator(FrozenGraph<T, P> graph, int[] offsets, int[] targets) {
+        this.graph = graph;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.nodeCount = offsets.length - 1;
+        this.blocked = new boolean[nodeCount];
+        this.blockedBy = new int[nodeCount][];
+        this.blockedBySize = new int[nodeCount];
+        this.stack = new int[nodeCount];
+        this.cursor = new int[nodeCount];
+        this.stackEdge = new int[nodeCount];
+        this.found = new boolean[nodeCount];
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !exhausted) {
+            next = advance();
+            exhausted = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public Path<T, P> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Path<T, P> cycle = next;
+        next = null;
+        return cycle;
+    }
+
+    private Path<T, P> advance() {
+        while (true) {
+            if (depth == 0 && !startNextRoot()) {
+                return null;
+            }
+            int top = depth - 1;
+            int node = stack[top];
+            if (cursor[top] < offsets[node + 1]) {
+                int edge = cursor[top]++;
+                int neighbor = targets[edge];
+                if (components.componentOf(neighbor) != component) {
+                    continue;
+                }
+                if (neighbor == root) {
+                    found[top] = true;
+                    return cycleClosedBy(edge);
+                }
+                if (!blocked[neighbor]) {
+                    stackEdge[top] = edge;
+                    push(neighbor);
+                }
+                continue;
+            }
+            if (found[top]) {
+                unblock(node);
+            } else {
+                for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                    if (components.componentOf(targets[edge]) == component) {
+                        addBlockedBy(targets[edge], node);
+                    }
+                }
+            }
+            depth--;
+            if (depth > 0) {
+                found[depth - 1] |= found[depth];
+            } else {
+                nextRoot = root + 1;
+            }
+        }
+    }
+
+    // the smallest node >= nextRoot that lies on a cycle of the subgraph induced by nodes >= nextRoot
+    private boolean startNextRoot() {
+        while (nextRoot < nodeCount) {
+            components = StronglyConnectedComponents.of(offsets, targets, nextRoot, null);
+            for (int node = nextRoot; node < nodeCount; node++) {
+                if (components.size(components.componentOf(node)) > 1 || graph.hasEdge(node, node)) {
+                    root = node;
+                    component = components.componentOf(node);
+                    for (int member = node; member < nodeCount; member++) {
+                        if (components.componentOf(member) == component) {
+                            blocked[member] = false;
+                            blockedBySize[member] = 0;
+                        }
+                    }
+                    push(node);
+                    return true;
+                }
+            }
+            nextRoot = nodeCount;
+        }
+        return false;
+    }
+
+    private void push(int node) {
+        blocked[node] = true;
+        stack[depth] = node;
+        cursor[depth] = offsets[node];
+        found[depth] = false;
+        depth++;
+    }
+
+    private void unblock(int node) {
+        int[] pending = new int[8];
+        int size = 0;
+        pending[size++] = node;
+        while (size > 0) {
+            int current = pending[--size];
+            blocked[current] = false;
+            for (int i = 0; i < blockedBySize[current]; i++) {
+                int waiting = blockedBy[current][i];
+                if (blocked[waiting]) {
+                    if (size == pending.length) {
+                        pending = Arrays.copyOf(pending, size * 2);
+                    }
+                    pending[size++] = waiting;
+                }
+            }
+            blockedBySize[current] = 0;
+        }
+    }
+
+    private void addBlockedBy(int node, int waiting) {
+        int[] waitingNodes = blockedBy[node];
+        int size = blockedBySize[node];
+        for (int i = 0; i < size; i++) {
+            if (waitingNodes[i] == waiting) {
+                return;
+            }
+        }
+        if (waitingNodes == null) {
+            waitingNodes = blockedBy[node] = new int[4];
+        } else if (size == waitingNodes.length) {
+            waitingNodes = blockedBy[node] = Arrays.copyOf(waitingNodes, size * 2);
+        }
+        waitingNodes[size] = waiting;
+        blockedBySize[node] = size + 1;
+    }
+
+    private Path<T, P> cycleClosedBy(int closingEdge) {
+        List<Edge<T, P>> cycle = new ArrayList<>(depth);
+        for (int position = 0; position < depth - 1; position++) {
+            cycle.add(graph.edge(stack[position], stackEdge[position]));
+        }
+        cycle.add(graph.edge(stack[depth - 1], closingEdge));
+        return new Path<>(cycle);
+    }
+}
@@ -0,0 +1,492 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Immutable compressed-sparse-row form of a directed multigraph.
+// Node properties are interned to dense int ids, adjacency lives in int[] arrays
+// and edge properties in a parallel array, so no Node/Edge objects exist until a Path is returned.
+public final class FrozenGraph<T, P> {
+
+    private static final byte WHITE = 0;
+    private static final byte GRAY = 1;
+    private static final byte BLACK = 2;
+    private static final byte REMOVED = 3;
+
+    private final List<T> nodes;
+    private final Map<T, Integer> ids;
+    private final int[] offsets;
+    private final int[] targets;
+    private final Object[] properties;
+
+    private FrozenGraph(List<T> nodes, Map<T, Integer> ids, int[] offsets, int[] targets, Object[] properties) {
+        this.nodes = nodes;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.properties = properties;
+    }
+
+    public static <T, P> Builder<T, P> builder() {
+        return new Builder<>(16);
+    }
+
+    public static <T, P> Builder<T, P> builder(int expectedEdges) {
+        return new Builder<>(expectedEdges);
+    }
+
+    public int nodeCount() {
+        return nodes.size();
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    public boolean hasEdge(Node<T> from, Node<T> to) {
+        Integer fromId = ids.get(from.property());
+        Integer toId = ids.get(to.property());
+        return fromId != null && toId != null && hasEdge(fromId, toId);
+    }
+
+    public <P2> FrozenGraph<T, P> intersection(FrozenGraph<T, P2> other) {
+        int[] otherIds = new int[nodes.size()];
+        for (int node = 0; node < otherIds.length; node++) {
+            Integer otherId = other.ids.get(nodes.get(node));
+            otherIds[node] = otherId == null ? -1 : otherId;
+        }
+
+        int[] resultOffsets = new int[offsets.length];
+        int[] resultTargets = new int[targets.length];
+        Object[] resultProperties = new Object[targets.length];
+        int size = 0;
+        for (int from = 0; from < nodes.size(); from++) {
+            resultOffsets[from] = size;
+            int otherFrom = otherIds[from];
+            if (otherFrom < 0) {
+                continue;
+            }
+            for (int edge = offsets[from]; edge < offsets[from + 1]; edge++) {
+                int otherTo = otherIds[targets[edge]];
+                if (otherTo >= 0 && other.hasEdge(otherFrom, otherTo)) {
+                    resultTargets[size] = targets[edge];
+                    resultProperties[size] = properties[edge];
+                    size++;
+                }
+            }
+        }
+        resultOffsets[nodes.size()] = size;
+        return new FrozenGraph<>(nodes, ids, resultOffsets,
+                Arrays.copyOf(resultTargets, size), Arrays.copyOf(resultProperties, size));
+    }
+
+    public Optional<Path<T, P>> findFirstCycle() {
+        StronglyConnectedComponents components = StronglyConnectedComponents.of(offsets, targets);
+        for (int node = 0; node < nodes.size(); node++) {
+            if (isOnCycle(node, components)) {
+                return Optional.of(cycleThrough(node, components));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Single DFS pass: every back edge closes a cycle whose nodes are taken off the stack and removed,
+    // so the result is a maximal set of node-disjoint cycles (no cycle remains among the other nodes).
+    public List<Path<T, P>> findDisjointCycles() {
+        int nodeCount = nodes.size();
+        byte[] state = new byte[nodeCount];
+        int[] parentEdge = new int[nodeCount];
+        int[] stackPosition = new int[nodeCount];
+        int[] cursor = new int[nodeCount];
+        int[] stack = new int[nodeCount];
+        List<Path<T, P>> cycles = new ArrayList<>();
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (state[root] != WHITE) {
+                continue;
+            }
+            int top = 0;
+            state[root] = GRAY;
+            cursor[root] = offsets[root];
+            stackPosition[root] = top;
+            stack[top++] = root;
+            while (top > 0) {
+                int current = stack[top - 1];
+                if (cursor[current] == offsets[current + 1]) {
+                    state[current] = BLACK;
+                    top--;
+                    continue;
+                }
+                int edge = cursor[current]++;
+                int neighbor = targets[edge];
+                if (state[neighbor] == GRAY) {
+                    int start = stackPosition[neighbor];
+                    List<Edge<T, P>> cycle = new ArrayList<>(top - start);
+                    for (int position = start + 1; position < top; position++) {
+                        cycle.add(edge(stack[position - 1], parentEdge[stack[position]]));
+                    }
+                    cycle.add(edge(current, edge));
+                    cycles.add(new Path<>(cycle));
+                    for (int position = start; position < top; position++) {
+                        state[stack[position]] = REMOVED;
+                    }
+                    top = start;
+                } else if (state[neighbor] == WHITE) {
+                    state[neighbor] = GRAY;
+                    parentEdge[neighbor] = edge;
+                    cursor[neighbor] = offsets[neighbor];
+                    stackPosition[neighbor] = top;
+                    stack[top++] = neighbor;
+                }
+            }
+        }
+        return cycles;
+    }
+
+    // Node-disjoint cycles of at most maxLength edges, shortest first. Every node gets its shortest bounded cycle;
+    // a candidate that lost a node to an already chosen cycle is searched again without the removed nodes.
+    public List<Path<T, P>> findCycles(int maxLength) {
+        if (maxLength < 1) {
+            throw new IllegalArgumentException("maxLength must be positive, got " + maxLength);
+        }
+        BoundedCycleSearch search = new BoundedCycleSearch(offsets, targets);
+        PriorityQueue<BoundedCycle> candidates = new PriorityQueue<>();
+        for (int node = 0; node < nodes.size(); node++) {
+            int[] cycle = search.shortestCycleThrough(node, maxLength);
+            if (cycle != null) {
+                candidates.add(new BoundedCycle(node, cycle));
+            }
+        }
+        List<Path<T, P>> cycles = new ArrayList<>();
+        while (!candidates.isEmpty()) {
+            BoundedCycle candidate = candidates.poll();
+            if (search.touchesRemoved(candidate.edges())) {
+                int[] cycle = search.shortestCycleThrough(candidate.node(), maxLength);
+                if (cycle != null) {
+                    candidates.add(new BoundedCycle(candidate.node(), cycle));
+                }
+                continue;
+            }
+            search.remove(candidate.edges());
+            List<Edge<T, P>> path = new ArrayList<>(candidate.edges().length);
+            for (int edge : candidate.edges()) {
+                path.add(edge(search.sourceOf(edge), edge));
+            }
+            cycles.add(new Path<>(path));
+        }
+        return cycles;
+    }
+
+    // Node-disjoint paths ending in nodes accepted by isEnd and avoiding excluded nodes. One backward BFS from all
+    // ends at once gives every node its next hop toward the nearest end, so the ends grow disjoint trees;
+    // each end then takes the deepest path of its tree.
+    public List<Path<T, P>> findDisjointChains(Predicate<T> isEnd, Set<T> excluded) {
+        int nodeCount = nodes.size();
+        int[] reverseOffsets = new int[nodeCount + 1];
+        int[] reverseEdges = new int[targets.length];
+        int[] sources = new int[targets.length];
+        for (int node = 0; node < nodeCount; node++) {
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                sources[edge] = node;
+                reverseOffsets[targets[edge] + 1]++;
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            reverseOffsets[node + 1] += reverseOffsets[node];
+        }
+        int[] filled = Arrays.copyOf(reverseOffsets, nodeCount);
+        for (int edge = 0; edge < targets.length; edge++) {
+            reverseEdges[filled[targets[edge]]++] = edge;
+        }
+
+        boolean[] visited = new boolean[nodeCount];
+        boolean[] end = new boolean[nodeCount];
+        int[] nextEdge = new int[nodeCount];
+        int[] rootOf = new int[nodeCount];
+        int[] deepest = new int[nodeCount];
+        int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            T property = nodes.get(node);
+            if (excluded.contains(property)) {
+                visited[node] = true;
+            } else if (isEnd.test(property)) {
+                end[node] = true;
+                visited[node] = true;
+                rootOf[node] = node;
+                deepest[node] = node;
+                queue[tail++] = node;
+            }
+        }
+        while (head < tail) {
+            int current = queue[head++];
+            for (int reverse = reverseOffsets[current]; reverse < reverseOffsets[current + 1]; reverse++) {
+                int edge = reverseEdges[reverse];
+                int previous = sources[edge];
+                if (!visited[previous]) {
+                    visited[previous] = true;
+                    nextEdge[previous] = edge;
+                    rootOf[previous] = rootOf[current];
+                    deepest[rootOf[current]] = previous;
+                    queue[tail++] = previous;
+                }
+            }
+        }
+
+        List<Path<T, P>> chains = new ArrayList<>();
+        for (int root = 0; root < nodeCount; root++) {
+            if (end[root] && deepest[root] != root) {
+                List<Edge<T, P>> chain = new ArrayList<>();
+                for (int node = deepest[root]; node != root; node = targets[nextEdge[node]]) {
+                    chain.add(edge(node, nextEdge[node]));
+                }
+                chains.add(new Path<>(chain));
+            }
+        }
+        return chains;
+    }
+
+    // Every elementary cycle, produced lazily (Johnson's algorithm) - limit() or any short-circuiting
+    // operation stops the search, so the first N cycles cost N steps rather than the full, possibly exponential set.
+    public Stream<Path<T, P>> elementaryCycles() {
+        Iterator<Path<T, P>> cycles = new ElementaryCycleIterator<>(this, offsets, targets);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cycles, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    public List<Path<T, P>> findDisjointCycles(ForkJoinPool pool) {
+        return ParallelCycleSearch.findDisjointCycles(this, pool);
+    }
+
+    // union-find pass over the edges, then each component is copied into its own CSR with local ids
+    public List<FrozenGraph<T, P>> weaklyConnectedComponents() {
+        int nodeCount = nodes.size();
+        UnionFind sets = new UnionFind(nodeCount);
+        for (int from = 0; from < nodeCount; from++) {
+            for (int edge = offsets[from]; edge < offsets[from + 1]; edge++) {
+                sets.union(from, targets[edge]);
+            }
+        }
+
+        int[] componentOfRoot = new int[nodeCount];
+        Arrays.fill(componentOfRoot, -1);
+        int[] componentOf = new int[nodeCount];
+        int[] localId = new int[nodeCount];
+        List<List<T>> componentNodes = new ArrayList<>();
+        List<int[]> componentOffsets = new ArrayList<>();
+        for (int node = 0; node < nodeCount; node++) {
+            int root = sets.find(node);
+            if (componentOfRoot[root] < 0) {
+                componentOfRoot[root] = componentNodes.size();
+                componentNodes.add(new ArrayList<>());
+            }
+            int component = componentOfRoot[root];
+            componentOf[node] = component;
+            localId[node] = componentNodes.get(component).size();
+            componentNodes.get(component).add(nodes.get(node));
+        }
+        for (List<T> members : componentNodes) {
+            componentOffsets.add(new int[members.size() + 1]);
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            componentOffsets.get(componentOf[node])[localId[node] + 1] = offsets[node + 1] - offsets[node];
+        }
+
+        List<FrozenGraph<T, P>> result = new ArrayList<>(componentNodes.size());
+        int[] filled = new int[componentNodes.size()];
+        List<int[]> componentTargets = new ArrayList<>();
+        List<Object[]> componentProperties = new ArrayList<>();
+        for (int component = 0; component < componentNodes.size(); component++) {
+            int[] localOffsets = componentOffsets.get(component);
+            for (int local = 0; local < localOffsets.length - 1; local++) {
+                localOffsets[local + 1] += localOffsets[local];
+            }
+            componentTargets.add(new int[localOffsets[localOffsets.length - 1]]);
+            componentProperties.add(new Object[localOffsets[localOffsets.length - 1]]);
+        }
+        // global ids grow monotonically inside a component, so rows stay sorted by target
+        for (int node = 0; node < nodeCount; node++) {
+            int component = componentOf[node];
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                componentTargets.get(component)[filled[component]] = localId[targets[edge]];
+                componentProperties.get(component)[filled[component]] = properties[edge];
+                filled[component]++;
+            }
+        }
+        for (int component = 0; component < componentNodes.size(); component++) {
+            List<T> members = componentNodes.get(component);
+            Map<T, Integer> memberIds = new HashMap<>(members.size() * 2);
+            for (int local = 0; local < members.size(); local++) {
+                memberIds.put(members.get(local), local);
+            }
+            result.add(new FrozenGraph<>(List.copyOf(members), Map.copyOf(memberIds), componentOffsets.get(component),
+                    componentTargets.get(component), componentProperties.get(component)));
+        }
+        return result;
+    }
+
+    public List<Set<Node<T>>> stronglyConnectedComponents() {
+        StronglyConnectedComponents components = StronglyConnectedComponents.of(offsets, targets);
+        List<Set<Node<T>>> result = new ArrayList<>(components.count());
+        for (int component = 0; component < components.count(); component++) {
+            result.add(new HashSet<>());
+        }
+        for (int node = 0; node < nodes.size(); node++) {
+            result.get(components.componentOf(node)).add(new Node<>(nodes.get(node)));
+        }
+        return result;
+    }
+
+    private boolean isOnCycle(int node, StronglyConnectedComponents components) {
+        return components.size(components.componentOf(node)) > 1 || hasEdge(node, node);
+    }
+
+    // BFS inside the component of start; the first edge leading back to start closes the shortest cycle through it
+    private Path<T, P> cycleThrough(int start, StronglyConnectedComponents components) {
+        int component = components.componentOf(start);
+        int[] parentEdge = new int[nodes.size()];
+        int[] parentNode = new int[nodes.size()];
+        boolean[] visited = new boolean[nodes.size()];
+        int[] queue = new int[nodes.size()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        visited[start] = true;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                int neighbor = targets[edge];
+                if (neighbor == start) {
+                    return cycleClosedBy(edge, current, start, parentEdge, parentNode);
+                }
+                if (!visited[neighbor] && components.componentOf(neighbor) == component) {
+                    visited[neighbor] = true;
+                    parentEdge[neighbor] = edge;
+                    parentNode[neighbor] = current;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        throw new IllegalStateException("Node " + nodes.get(start) + " is not on a cycle");
+    }
+
+    private Path<T, P> cycleClosedBy(int closingEdge, int from, int to, int[] parentEdge, int[] parentNode) {
+        LinkedList<Edge<T, P>> cycle = new LinkedList<>();
+        cycle.add(edge(from, closingEdge));
+        for (int current = from; current != to; current = parentNode[current]) {
+            cycle.addFirst(edge(parentNode[current], parentEdge[current]));
+        }
+        return new Path<>(new ArrayList<>(cycle));
+    }
+
+    boolean hasEdge(int from, int to) {
+        return Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    Edge<T, P> edge(int from, int edge) {
+        return new Edge<>(new Node<>(nodes.get(from)), new Node<>(nodes.get(targets[edge])), (P) properties[edge]);
+    }
+
+    private record BoundedCycle(int node, int[] edges) implements Comparable<BoundedCycle> {
+
+        @Override
+        public int compareTo(BoundedCycle other) {
+            int byLength = Integer.compare(edges.length, other.edges.length);
+            return byLength != 0 ? byLength : Integer.compare(node, other.node);
+        }
+    }
+
+    public static final class Builder<T, P> {
+        private final List<T> nodes = new ArrayList<>();
+        private final Map<T, Integer> ids = new HashMap<>();
+        private int[] sources;
+        private int[] targets;
+        private Object[] properties;
+        private int size;
+
+        private Builder(int expectedEdges) {
+            int capacity = Math.max(expectedEdges, 1);
+            this.sources = new int[capacity];
+            this.targets = new int[capacity];
+            this.properties = new Object[capacity];
+        }
+
+        public Builder<T, P> addNode(T node) {
+            intern(node);
+            return this;
+        }
+
+        public Builder<T, P> addEdge(T from, T to, P property) {
+            if (size == sources.length) {
+                int capacity = size * 2;
+                sources = Arrays.copyOf(sources, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                properties = Arrays.copyOf(properties, capacity);
+            }
+            sources[size] = intern(from);
+            targets[size] = intern(to);
+            properties[size] = property;
+            size++;
+            return this;
+        }
+
+        public FrozenGraph<T, P> build() {
+            int nodeCount = nodes.size();
+            // two stable counting sorts: by target, then by source -> rows sorted by target
+            int[] byTarget = countingSort(identity(size), targets, nodeCount);
+            int[] bySource = countingSort(byTarget, sources, nodeCount);
+
+            int[] offsets = new int[nodeCount + 1];
+            for (int edge = 0; edge < size; edge++) {
+                offsets[sources[edge] + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                offsets[node + 1] += offsets[node];
+            }
+            int[] csrTargets = new int[size];
+            Object[] csrProperties = new Object[size];
+            for (int position = 0; position < size; position++) {
+                csrTargets[position] = targets[bySource[position]];
+                csrProperties[position] = properties[bySource[position]];
+            }
+            return new FrozenGraph<>(List.copyOf(nodes), Map.copyOf(ids), offsets, csrTargets, csrProperties);
+        }
+
+        private int intern(T node) {
+            Integer id = ids.get(node);
+            if (id == null) {
+                id = nodes.size();
+                ids.put(node, id);
+                nodes.add(node);
+            }
+            return id;
+        }
+
+        private int[] identity(int length) {
+            int[] result = new int[length];
+            for (int i = 0; i < length; i++) {
+                result[i] = i;
+            }
+            return result;
+        }
+
+        private int[] countingSort(int[] order, int[] keys, int keyCount) {
+            int[] counts = new int[keyCount + 1];
+            for (int edge : order) {
+                counts[keys[edge] + 1]++;
+            }
+            for (int key = 0; key < keyCount; key++) {
+                counts[key + 1] += counts[key];
+            }
+            int[] result = new int[order.length];
+            for (int edge : order) {
+                result[counts[keys[edge]]++] = edge;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import java.util.*;
+
+// Long-lived acyclic graph with a dynamic topological order (Pearce-Kelly).
+// An edge that would close a cycle is not inserted - the cycle is returned instead.
+// Inserting an edge only visits nodes whose order lies between its endpoints (the affected region).
+// A node that loses its last edge is dropped and its id, together with its order value, is reused by the next new node,
+// so memory follows the nodes currently in the graph rather than every node ever seen.
+public final class IncrementalCycleDetector<T, P> {
+
+    private final List<T> nodes = new ArrayList<>();
+    private final Map<T, Integer> ids = new HashMap<>();
+    private final List<List<PendingEdge<P>>> outgoing = new ArrayList<>();
+    private final List<List<PendingEdge<P>>> incoming = new ArrayList<>();
+    private int[] order = new int[16];
+    private int[] visitedInRound = new int[16];
+    private int[] cursor = new int[16];
+    private Object[] parentEdge = new Object[16];
+    private final IntStack freeIds = new IntStack();
+    private int round;
+    private int edgeCount;
+
+    public Optional<Path<T, P>> addEdge(T from, T to, P property) {
+        int source = intern(from);
+        int target = intern(to);
+        PendingEdge<P> edge = new PendingEdge<>(source, target, property);
+        if (source == target) {
+            Path<T, P> loop = new Path<>(List.of(toEdge(edge)));
+            releaseIfIsolated(source);
+            return Optional.of(loop);
+        }
+        if (order[source] < order[target]) {
+            insert(edge);
+            return Optional.empty();
+        }
+
+        int upperBound = order[source];
+        IntStack forward = new IntStack();
+        round++;
+        if (searchForward(target, source, upperBound, forward)) {
+            return Optional.of(cycleClosedBy(edge));
+        }
+        IntStack backward = new IntStack();
+        round++;
+        searchBackward(source, order[target], backward);
+        reorder(backward, forward);
+        insert(edge);
+        return Optional.empty();
+    }
+
+    public boolean removeEdge(T from, T to, P property) {
+        Integer source = ids.get(from);
+        Integer target = ids.get(to);
+        if (source == null || target == null) {
+            return false;
+        }
+        List<PendingEdge<P>> edges = outgoing.get(source);
+        for (int i = 0; i < edges.size(); i++) {
+            PendingEdge<P> edge = edges.get(i);
+            if (edge.to() == target && Objects.equals(edge.property(), property)) {
+                edges.remove(i);
+                incoming.get(target).remove(edge);
+                edgeCount--;
+                releaseIfIsolated(source);
+                releaseIfIsolated(target);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean hasEdge(Node<T> from, Node<T> to) {
+        Integer source = ids.get(from.property());
+        Integer target = ids.get(to.property());
+        return source != null && target != null
+                && outgoing.get(source).stream().anyMatch(edge -> edge.to() == target);
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    public int nodeCount() {
+        return ids.size();
+    }
+
+    // visible for tests: true when every edge goes forward in the maintained order
+    boolean isTopologicallyOrdered() {
+        for (List<PendingEdge<P>> edges : outgoing) {
+            for (PendingEdge<P> edge : edges) {
+                if (order[edge.from()] >= order[edge.to()]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean searchForward(int start, int goal, int upperBound, IntStack visited) {
+        IntStack stack = new IntStack();
+        enter(start, stack, visited);
+        while (!stack.isEmpty()) {
+            int node = stack.peek();
+            List<PendingEdge<P>> edges = outgoing.get(node);
+            if (cursor[node] == edges.size()) {
+                stack.pop();
+                continue;
+            }
+            PendingEdge<P> edge = edges.get(cursor[node]++);
+            int next = edge.to();
+            if (visitedInRound[next] == round || order[next] > upperBound) {
+                continue;
+            }
+            parentEdge[next] = edge;
+            if (next == goal) {
+                return true;
+            }
+            enter(next, stack, visited);
+        }
+        return false;
+    }
+
+    private void searchBackward(int start, int lowerBound, IntStack visited) {
+        IntStack stack = new IntStack();
+        enter(start, stack, visited);
+        while (!stack.isEmpty()) {
+            int node = stack.peek();
+            List<PendingEdge<P>> edges = incoming.get(node);
+            if (cursor[node] == edges.size()) {
+                stack.pop();
+                continue;
+            }
+            int previous = edges.get(cursor[node]++).from();
+            if (visitedInRound[previous] != round && order[previous] > lowerBound) {
+                enter(previous, stack, visited);
+            }
+        }
+    }
+
+    private void enter(int node, IntStack stack, IntStack visited) {
+        visitedInRound[node] = round;
+        cursor[node] = 0;
+        stack.push(node);
+        visited.push(node);
+    }
+
+    // nodes reaching the new edge's source go first, nodes reachable from its target after them,
+    // both keeping their relative order and reusing the same pool of order values
+    private void reorder(IntStack backward, IntStack forward) {
+        long[] backwardByOrder = byOrder(backward);
+        long[] forwardByOrder = byOrder(forward);
+        int[] pool = new int[backwardByOrder.length + forwardByOrder.length];
+        int size = 0;
+        for (long entry : backwardByOrder) {
+            pool[size++] = (int) (entry >>> 32);
+        }
+        for (long entry : forwardByOrder) {
+            pool[size++] = (int) (entry >>> 32);
+        }
+        Arrays.sort(pool);
+        int next = 0;
+        for (long entry : backwardByOrder) {
+            order[(int) entry] = pool[next++];
+        }
+        for (long entry : forwardByOrder) {
+            order[(int) entry] = pool[next++];
+        }
+    }
+
+    private long[] byOrder(IntStack nodes) {
+        long[] result = new long[nodes.size()];
+        for (int i = 0; i < result.length; i++) {
+            int node = nodes.get(i);
+            result[i] = ((long) order[node] << 32) | node;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Path<T, P> cycleClosedBy(PendingEdge<P> closingEdge) {
+        LinkedList<Edge<T, P>> cycle = new LinkedList<>();
+        cycle.add(toEdge(closingEdge));
+        for (int node = closingEdge.from(); node != closingEdge.to(); ) {
+            PendingEdge<P> edge = (PendingEdge<P>) parentEdge[node];
+            cycle.addFirst(toEdge(edge));
+            node = edge.from();
+        }
+        return new Path<>(new ArrayList<>(cycle));
+    }
+
+    private void insert(PendingEdge<P> edge) {
+        outgoing.get(edge.from()).add(edge);
+        incoming.get(edge.to()).add(edge);
+        edgeCount++;
+    }
+
+    private Edge<T, P> toEdge(PendingEdge<P> edge) {
+        return new Edge<>(new Node<>(nodes.get(edge.from())), new Node<>(nodes.get(edge.to())), edge.property());
+    }
+
+    private int intern(T node) {
+        Integer id = ids.get(node);
+        if (id != null) {
+            return id;
+        }
+        if (!freeIds.isEmpty()) {
+            // the released node had no edges, so its order value is free for a node without edges
+            id = freeIds.pop();
+            ids.put(node, id);
+            nodes.set(id, node);
+            return id;
+        }
+        id = nodes.size();
+        if (id == order.length) {
+            int capacity = id * 2;
+            order = Arrays.copyOf(order, capacity);
+            visitedInRound = Arrays.copyOf(visitedInRound, capacity);
+            cursor = Arrays.copyOf(cursor, capacity);
+            parentEdge = Arrays.copyOf(parentEdge, capacity);
+        }
+        // a new node has no edges yet, so appending it at the end keeps the order valid
+        order[id] = id;
+        ids.put(node, id);
+        nodes.add(node);
+        outgoing.add(new ArrayList<>());
+        incoming.add(new ArrayList<>());
+        return id;
+    }
+
+    private void releaseIfIsolated(int node) {
+        if (outgoing.get(node).isEmpty() && incoming.get(node).isEmpty()) {
+            ids.remove(nodes.get(node));
+            nodes.set(node, null);
+            parentEdge[node] = null;
+            freeIds.push(node);
+        }
+    }
+
+    private record PendingEdge<P>(int from, int to, P property) {
+    }
+
+    private static final class IntStack {
+        private int[] elements = new int[8];
+        private int size;
+
+        void push(int element) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size * 2);
+            }
+            elements[size++] = element;
+        }
+
+        int pop() {
+            return elements[--size];
+        }
+
+        int peek() {
+            return elements[size - 1];
+        }
+
+        int get(int index) {
+            return elements[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Components share no nodes, so their disjoint cycles can be searched independently and simply concatenated.
+final class ParallelCycleSearch {
+
+    static final int SEQUENTIAL_THRESHOLD = 4_096;
+
+    private ParallelCycleSearch() {
+    }
+
+    static <T, P> List<Path<T, P>> findDisjointCycles(FrozenGraph<T, P> graph, ForkJoinPool pool) {
+        if (graph.edgeCount() <= SEQUENTIAL_THRESHOLD) {
+            return graph.findDisjointCycles();
+        }
+        List<FrozenGraph<T, P>> components = graph.weaklyConnectedComponents();
+        long[] edgesBefore = new long[components.size() + 1];
+        for (int i = 0; i < components.size(); i++) {
+            edgesBefore[i + 1] = edgesBefore[i] + components.get(i).edgeCount();
+        }
+        return pool.invoke(new SearchTask<>(components, edgesBefore, 0, components.size()));
+    }
+
+    private static final class SearchTask<T, P> extends RecursiveTask<List<Path<T, P>>> {
+        private static final long serialVersionUID = 1L;
+
+        // zadanie żyje tylko w puli wątków, nigdy nie jest serializowane
+        private final transient List<FrozenGraph<T, P>> components;
+        private final long[] edgesBefore;
+        private final int from;
+        private final int to;
+
+        private SearchTask(List<FrozenGraph<T, P>> components, long[] edgesBefore, int from, int to) {
+            this.components = components;
+            this.edgesBefore = edgesBefore;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Path<T, P>> compute() {
+            if (to - from == 1 || edgesBefore[to] - edgesBefore[from] <= SEQUENTIAL_THRESHOLD) {
+                List<Path<T, P>> cycles = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    cycles.addAll(components.get(i).findDisjointCycles());
+                }
+                return cycles;
+            }
+            int middle = (from + to) >>> 1;
+            SearchTask<T, P> left = new SearchTask<>(components, edgesBefore, from, middle);
+            left.fork();
+            List<Path<T, P>> cycles = new ArrayList<>(new SearchTask<>(components, edgesBefore, middle, to).compute());
+            cycles.addAll(0, left.join());
+            return cycles;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import java.util.Arrays;
+
+// Tarjan's algorithm over CSR arrays with explicit stacks instead of recursion, O(V + E).
+// Nodes below firstNode or marked as removed are treated as absent.
+final class StronglyConnectedComponents {
+
+    static final int ABSENT = -1;
+
+    private final int[] componentOf;
+    private final int[] componentSize;
+    private final int count;
+
+    private StronglyConnectedComponents(int[] componentOf, int[] componentSize, int count) {
+        this.componentOf = componentOf;
+        this.componentSize = componentSize;
+        this.count = count;
+    }
+
+    static StronglyConnectedComponents of(int[] offsets, int[] targets) {
+        return of(offsets, targets, 0, null);
+    }
+
+    static StronglyConnectedComponents of(int[] offsets, int[] targets, int firstNode, boolean[] removed) {
+        int nodeCount = offsets.length - 1;
+        int[] index = new int[nodeCount];
+        int[] lowLink = new int[nodeCount];
+        int[] cursor = new int[nodeCount];
+        boolean[] onStack = new boolean[nodeCount];
+        int[] componentStack = new int[nodeCount];
+        int[] callStack = new int[nodeCount];
+        int[] componentOf = new int[nodeCount];
+        int[] componentSize = new int[nodeCount];
+        Arrays.fill(index, ABSENT);
+        Arrays.fill(componentOf, ABSENT);
+
+        int counter = 0;
+        int count = 0;
+        int componentTop = 0;
+        for (int root = firstNode; root < nodeCount; root++) {
+            if (index[root] != ABSENT || isRemoved(root, removed)) {
+                continue;
+            }
+            int callTop = 0;
+            index[root] = lowLink[root] = counter++;
+            cursor[root] = offsets[root];
+            componentStack[componentTop++] = root;
+            onStack[root] = true;
+            callStack[callTop++] = root;
+
+            while (callTop > 0) {
+                int node = callStack[callTop - 1];
+                if (cursor[node] < offsets[node + 1]) {
+                    int neighbor = targets[cursor[node]++];
+                    if (neighbor < firstNode || isRemoved(neighbor, removed)) {
+                        continue;
+                    }
+                    if (index[neighbor] == ABSENT) {
+                        index[neighbor] = lowLink[neighbor] = counter++;
+                        cursor[neighbor] = offsets[neighbor];
+                        componentStack[componentTop++] = neighbor;
+                        onStack[neighbor] = true;
+                        callStack[callTop++] = neighbor;
+                    } else if (onStack[neighbor]) {
+                        lowLink[node] = Math.min(lowLink[node], index[neighbor]);
+                    }
+                    continue;
+                }
+                callTop--;
+                if (callTop > 0) {
+                    int caller = callStack[callTop - 1];
+                    lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+                }
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = componentStack[--componentTop];
+                        onStack[member] = false;
+                        componentOf[member] = count;
+                        componentSize[count]++;
+                    } while (member != node);
+                    count++;
+                }
+            }
+        }
+        return new StronglyConnectedComponents(componentOf, Arrays.copyOf(componentSize, count), count);
+    }
+
+    int componentOf(int node) {
+        return componentOf[node];
+    }
+
+    int size(int component) {
+        return componentSize[component];
+    }
+
+    int count() {
+        return count;
+    }
+
+    private static boolean isRemoved(int node, boolean[] removed) {
+        return removed != null && removed[node];
+    }
+}
@@ -0,0 +1,101 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import java.util.*;
+
+// Gale's Top Trading Cycles. Every agent owns exactly one object (identified by the agent itself) and ranks
+// the objects of other agents; each agent points at its best object still on the market, an agent pointing
+// at itself (list exhausted, or its own object ranked next) keeps what it has. Cycles of pointers trade
+// and leave the market. One walk with a path stack finds all of them: every agent is pushed once and every
+// preference is skipped at most once, so clearing is O(agents + preferences).
+// The result is a set of node-disjoint cycles; the edge property is the property of the agent that moves.
+public final class TopTradingCycles<T, P> {
+
+    private final Map<T, Integer> ids = new HashMap<>();
+    private final List<T> agents = new ArrayList<>();
+    private final List<P> properties = new ArrayList<>();
+    private final List<List<T>> preferences = new ArrayList<>();
+
+    public TopTradingCycles<T, P> addAgent(T agent, P property, List<T> rankedObjects) {
+        if (ids.putIfAbsent(agent, agents.size()) != null) {
+            throw new IllegalArgumentException("Agent " + agent + " is already on the market");
+        }
+        agents.add(agent);
+        properties.add(property);
+        preferences.add(rankedObjects);
+        return this;
+    }
+
+    public List<Path<T, P>> clear() {
+        int agentCount = agents.size();
+        int[][] ranked = new int[agentCount][];
+        for (int agent = 0; agent < agentCount; agent++) {
+            ranked[agent] = rankedIds(agent);
+        }
+        int[] cursor = new int[agentCount];
+        boolean[] removed = new boolean[agentCount];
+        int[] stackPosition = new int[agentCount];
+        Arrays.fill(stackPosition, -1);
+        int[] stack = new int[agentCount];
+        List<Path<T, P>> cycles = new ArrayList<>();
+
+        for (int start = 0; start < agentCount; start++) {
+            if (removed[start] || stackPosition[start] >= 0) {
+                continue;
+            }
+            int top = 0;
+            stackPosition[start] = top;
+            stack[top++] = start;
+            while (top > 0) {
+                int agent = stack[top - 1];
+                int pointed = pointedBy(agent, ranked, cursor, removed);
+                if (pointed == agent) {
+                    removed[agent] = true;
+                    stackPosition[agent] = -1;
+                    top--;
+                } else if (stackPosition[pointed] >= 0) {
+                    int first = stackPosition[pointed];
+                    List<Edge<T, P>> cycle = new ArrayList<>(top - first);
+                    for (int position = first; position < top; position++) {
+                        int member = stack[position];
+                        int next = position + 1 < top ? stack[position + 1] : pointed;
+                        cycle.add(new Edge<>(new Node<>(agents.get(member)), new Node<>(agents.get(next)), properties.get(member)));
+                        removed[member] = true;
+                        stackPosition[member] = -1;
+                    }
+                    cycles.add(new Path<>(cycle));
+                    top = first;
+                } else {
+                    stackPosition[pointed] = top;
+                    stack[top++] = pointed;
+                }
+            }
+        }
+        return cycles;
+    }
+
+    // objects ranked below the agent's own one are never better than keeping it, so the list is cut there
+    private int[] rankedIds(int agent) {
+        List<T> objects = preferences.get(agent);
+        int[] result = new int[objects.size()];
+        int size = 0;
+        for (T object : objects) {
+            Integer id = ids.get(object);
+            if (id == null) {
+                continue;
+            }
+            if (id == agent) {
+                break;
+            }
+            result[size++] = id;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int pointedBy(int agent, int[][] ranked, int[] cursor, boolean[] removed) {
+        int[] objects = ranked[agent];
+        while (cursor[agent] < objects.length && removed[objects[cursor[agent]]]) {
+            cursor[agent]++;
+        }
+        return cursor[agent] < objects.length ? objects[cursor[agent]] : agent;
+    }
+}
@@ -0,0 +1,40 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+// Disjoint sets over dense int ids, union by size with path halving.
+final class UnionFind {
+
+    private final int[] parent;
+    private final int[] size;
+
+    UnionFind(int count) {
+        this.parent = new int[count];
+        this.size = new int[count];
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    int find(int element) {
+        while (parent[element] != element) {
+            parent[element] = parent[parent[element]];
+            element = parent[element];
+        }
+        return element;
+    }
+
+    void union(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+        if (firstRoot == secondRoot) {
+            return;
+        }
+        if (size[firstRoot] < size[secondRoot]) {
+            int swap = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = swap;
+        }
+        parent[secondRoot] = firstRoot;
+        size[firstRoot] += size[secondRoot];
+    }
+}
@@ -0,0 +1,121 @@
+package com.softwarearchetypes.graphs.influence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Procesy i laboratoria ponumerowane małymi intami, jednostka to process * liczba laboratoriów + laboratorium.
+// Wiersz jednostki to bitset jednostek, na które wpływa - liczony przy pierwszym użyciu ze źródłowej relacji,
+// bo wszystkie wiersze naraz to kwadrat liczby jednostek bitów.
+class BitsetInfluence implements InfluenceRelation {
+
+    static final int ABSENT = -1;
+
+    private final InfluenceRelation source;
+    private final Map<PhysicsProcess, Integer> processIds = new HashMap<>();
+    private final List<PhysicsProcess> processes = new ArrayList<>();
+    private final Map<Laboratory, Integer> laboratoryIds = new HashMap<>();
+    private final List<Laboratory> laboratories = new ArrayList<>();
+    private final int words;
+    private final AtomicReferenceArray<long[]> rows;
+
+    BitsetInfluence(InfluenceRelation source, Set<PhysicsProcess> processes, Set<Laboratory> laboratories) {
+        this.source = source;
+        for (PhysicsProcess process : processes) {
+            processIds.put(process, this.processes.size());
+            this.processes.add(process);
+        }
+        for (Laboratory laboratory : laboratories) {
+            laboratoryIds.put(laboratory, this.laboratories.size());
+            this.laboratories.add(laboratory);
+        }
+        int units = Math.multiplyExact(processes.size(), laboratories.size());
+        this.words = (units + 63) >>> 6;
+        this.rows = new AtomicReferenceArray<>(units);
+    }
+
+    @Override
+    public boolean influences(InfluenceUnit from, InfluenceUnit to) {
+        int fromIndex = indexOf(from.process(), from.laboratory());
+        int toIndex = indexOf(to.process(), to.laboratory());
+        if (fromIndex == ABSENT || toIndex == ABSENT) {
+            return false;
+        }
+        return (row(fromIndex)[toIndex >>> 6] & (1L << toIndex)) != 0;
+    }
+
+    @Override
+    public Set<InfluenceUnit> successorsOf(InfluenceUnit unit) {
+        int index = indexOf(unit.process(), unit.laboratory());
+        if (index == ABSENT) {
+            return Set.of();
+        }
+        long[] row = row(index);
+        Set<InfluenceUnit> successors = new HashSet<>();
+        for (int word = 0; word < words; word++) {
+            for (long bits = row[word]; bits != 0; bits &= bits - 1) {
+                successors.add(unitAt((word << 6) + Long.numberOfTrailingZeros(bits)));
+            }
+        }
+        return successors;
+    }
+
+    @Override
+    public Set<InfluenceUnit> predecessorsOf(InfluenceUnit unit) {
+        return source.predecessorsOf(unit);
+    }
+
+    ReservedUnits reservedUnits() {
+        return new ReservedUnits(this, words);
+    }
+
+    int countInfluenced(Reservation reservation, ReservedUnits reserved) {
+        if (!reserved.isIndexedBy(this)) {
+            throw new IllegalArgumentException("Reserved units were created for a different influence map");
+        }
+        int index = indexOf(reservation.process(), reservation.laboratory());
+        if (index == ABSENT) {
+            return 0;
+        }
+        long[] row = row(index);
+        long[] occupied = reserved.words();
+        int count = 0;
+        for (int word = 0; word < words; word++) {
+            count += Long.bitCount(row[word] & occupied[word]);
+        }
+        return count;
+    }
+
+    int indexOf(PhysicsProcess process, Laboratory laboratory) {
+        Integer processId = processIds.get(process);
+        Integer laboratoryId = laboratoryIds.get(laboratory);
+        if (processId == null || laboratoryId == null) {
+            return ABSENT;
+        }
+        return processId * laboratories.size() + laboratoryId;
+    }
+
+    private InfluenceUnit unitAt(int index) {
+        return new InfluenceUnit(processes.get(index / laboratories.size()), laboratories.get(index % laboratories.size()));
+    }
+
+    private long[] row(int index) {
+        long[] row = rows.get(index);
+        if (row != null) {
+            return row;
+        }
+        row = new long[words];
+        for (InfluenceUnit successor : source.successorsOf(unitAt(index))) {
+            int successorIndex = indexOf(successor.process(), successor.laboratory());
+            if (successorIndex != ABSENT) {
+                row[successorIndex >>> 6] |= 1L << successorIndex;
+            }
+        }
+        // dwa wątki mogą policzyć ten sam wiersz - wynik jest identyczny, zostaje pierwszy
+        return rows.compareAndSet(index, null, row) ? row : rows.get(index);
+    }
+}
@@ -1,53 +1,69 @@
 package com.softwarearchetypes.graphs.influence;
 
 import org.jgrapht.Graph;
-import org.jgrapht.alg.connectivity.BiconnectivityInspector;
-import org.jgrapht.alg.connectivity.ConnectivityInspector;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.SimpleGraph;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 class InfluanceAnalyzer {
 
+    private static final long DEFAULT_CACHE_WEIGHT = 1_000_000;
+
     private final InfluenceMap influenceMap;
+    private final InfluenceAnalysisCache cache;
 
     InfluanceAnalyzer(InfluenceMap influenceMap) {
+        this(influenceMap, DEFAULT_CACHE_WEIGHT);
+    }
+
+    // waga analizy to liczba rezerwacji plus liczba krawędzi jej grafu
+    InfluanceAnalyzer(InfluenceMap influenceMap, long maxCachedWeight) {
         this.influenceMap = influenceMap;
+        this.cache = new InfluenceAnalysisCache(maxCachedWeight);
     }
 
     int countConflicts(Reservation newReservation, Set<Reservation> existingReservations) {
+        Set<InfluenceUnit> influenced = influenceMap.successorsOf(newReservation.unit());
+        if (existingReservations.size() < influenced.size()) {
+            int conflicts = 0;
+            for (Reservation existing : existingReservations) {
+                if (influenced.contains(existing.unit())) {
+                    conflicts++;
+                }
+            }
+            return conflicts;
+        }
         int conflicts = 0;
-        for (Reservation existing : existingReservations) {
-            if (influenceMap.influences(newReservation, existing)) {
+        for (InfluenceUnit unit : influenced) {
+            if (existingReservations.contains(Reservation.of(unit))) {
                 conflicts++;
             }
         }
         return conflicts;
     }
 
-    Set<InfluenceZone> analyzeInfluenceZones(Set<Reservation> reservations) {
-        Graph<Reservation, DefaultEdge> graph = buildInfluenceGraph(reservations);
-        ConnectivityInspector<Reservation, DefaultEdge> inspector = new ConnectivityInspector<>(graph);
+    int countConflicts(Reservation newReservation, ReservedUnits existingReservations) {
+        return influenceMap.countInfluenced(newReservation, existingReservations);
+    }
 
-        return inspector.connectedSets().stream()
-                .map(InfluenceZone::new)
-                .collect(Collectors.toSet());
+    Set<InfluenceZone> analyzeInfluenceZones(Set<Reservation> reservations) {
+        return analyze(reservations).zones();
     }
 
     InfluenceZone findInfluenceZone(Reservation reservation, Set<Reservation> allReservations) {
-        Graph<Reservation, DefaultEdge> graph = buildInfluenceGraph(allReservations);
-        ConnectivityInspector<Reservation, DefaultEdge> inspector = new ConnectivityInspector<>(graph);
-        Set<Reservation> connectedComponent = inspector.connectedSetOf(reservation);
-        return new InfluenceZone(connectedComponent);
+        return analyze(allReservations).zoneOf(reservation);
     }
 
     BridgingReservations identifyCriticalReservations(Set<Reservation> reservations) {
-        Graph<Reservation, DefaultEdge> graph = buildInfluenceGraph(reservations);
-        BiconnectivityInspector<Reservation, DefaultEdge> inspector = new BiconnectivityInspector<>(graph);
-        Set<Reservation> criticalReservations = inspector.getCutpoints();
-        return new BridgingReservations(criticalReservations);
+        return analyze(reservations).criticalReservations();
+    }
+
+    // wiele pytań o ten sam zbiór: trzymaj zwróconą analizę albo podawaj ten sam niezmienny zbiór
+    InfluenceAnalysis analyze(Set<Reservation> reservations) {
+        return cache.get(reservations, key -> new InfluenceAnalysis(buildInfluenceGraph(key)));
     }
 
     private Graph<Reservation, DefaultEdge> buildInfluenceGraph(Set<Reservation> reservations) {
@@ -55,10 +71,15 @@ class InfluanceAnalyzer {
         for (Reservation reservation : reservations) {
             graph.addVertex(reservation);
         }
-        for (Reservation r1 : reservations) {
-            for (Reservation r2 : reservations) {
-                if (!r1.equals(r2) && influenceMap.influences(r1, r2)) {
-                    graph.addEdge(r1, r2);
+        Map<InfluenceUnit, Reservation> byUnit = new HashMap<>();
+        for (Reservation reservation : reservations) {
+            byUnit.put(reservation.unit(), reservation);
+        }
+        for (Map.Entry<InfluenceUnit, Reservation> entry : byUnit.entrySet()) {
+            for (InfluenceUnit successor : influenceMap.successorsOf(entry.getKey())) {
+                Reservation influenced = byUnit.get(successor);
+                if (influenced != null && !influenced.equals(entry.getValue())) {
+                    graph.addEdge(entry.getValue(), influenced);
                 }
             }
         }
@@ -0,0 +1,54 @@
+package com.softwarearchetypes.graphs.influence;
+
+import org.jgrapht.Graph;
+import org.jgrapht.alg.connectivity.BiconnectivityInspector;
+import org.jgrapht.alg.connectivity.ConnectivityInspector;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+class InfluenceAnalysis {
+
+    private final Graph<Reservation, DefaultEdge> graph;
+    private final Map<Reservation, InfluenceZone> zoneOf = new HashMap<>();
+    private final Set<InfluenceZone> zones = new HashSet<>();
+    private BridgingReservations criticalReservations;
+
+    InfluenceAnalysis(Graph<Reservation, DefaultEdge> graph) {
+        this.graph = graph;
+        for (Set<Reservation> connected : new ConnectivityInspector<>(graph).connectedSets()) {
+            InfluenceZone zone = new InfluenceZone(connected);
+            zones.add(zone);
+            for (Reservation reservation : connected) {
+                zoneOf.put(reservation, zone);
+            }
+        }
+    }
+
+    Set<InfluenceZone> zones() {
+        return Collections.unmodifiableSet(zones);
+    }
+
+    InfluenceZone zoneOf(Reservation reservation) {
+        InfluenceZone zone = zoneOf.get(reservation);
+        if (zone == null) {
+            throw new IllegalArgumentException("Reservation " + reservation + " is not part of the analysed set");
+        }
+        return zone;
+    }
+
+    synchronized BridgingReservations criticalReservations() {
+        if (criticalReservations == null) {
+            criticalReservations = new BridgingReservations(new BiconnectivityInspector<>(graph).getCutpoints());
+        }
+        return criticalReservations;
+    }
+
+    long weight() {
+        return graph.vertexSet().size() + graph.edgeSet().size();
+    }
+}
@@ -0,0 +1,72 @@
+package com.softwarearchetypes.graphs.influence;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// Kluczem jest niezmienna kopia zbioru z zapamiętanym hashem. Kto trzyma niezmienny zbiór (Set.of, Set.copyOf)
+// i podaje ten sam egzemplarz, trafia w cache w O(1) - po tożsamości, bez liczenia hasha i porównywania elementów.
+// Zbiór zmienny jest kopiowany i porównywany po zawartości, więc jego późniejsze zmiany niczego w cache nie psują.
+class InfluenceAnalysisCache {
+
+    private final long maxWeight;
+    private final LinkedHashMap<AnalysedSet, InfluenceAnalysis> analyses = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Set<Reservation>, AnalysedSet> keys = new IdentityHashMap<>();
+    private long weight;
+
+    InfluenceAnalysisCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    synchronized InfluenceAnalysis get(Set<Reservation> reservations, Function<Set<Reservation>, InfluenceAnalysis> analyze) {
+        Set<Reservation> snapshot = Set.copyOf(reservations);
+        AnalysedSet key = keys.get(snapshot);
+        if (key == null) {
+            key = new AnalysedSet(snapshot, snapshot.hashCode());
+        }
+        InfluenceAnalysis cached = analyses.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        InfluenceAnalysis analysis = analyze.apply(snapshot);
+        if (analysis.weight() > maxWeight) {
+            return analysis;
+        }
+        analyses.put(key, analysis);
+        keys.put(snapshot, key);
+        weight += analysis.weight();
+        evictLeastRecentlyUsed();
+        return analysis;
+    }
+
+    synchronized int size() {
+        return analyses.size();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Iterator<Map.Entry<AnalysedSet, InfluenceAnalysis>> leastRecentlyUsed = analyses.entrySet().iterator();
+        while (weight > maxWeight) {
+            Map.Entry<AnalysedSet, InfluenceAnalysis> evicted = leastRecentlyUsed.next();
+            weight -= evicted.getValue().weight();
+            keys.remove(evicted.getKey().reservations());
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    private record AnalysedSet(Set<Reservation> reservations, int hash) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof AnalysedSet that
+                    && (reservations == that.reservations || hash == that.hash && reservations.equals(that.reservations));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -4,16 +4,33 @@ import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
 
+import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Supplier;
 
 
 class InfluenceMap {
-    private final Graph<InfluenceUnit, DefaultEdge> graph;
+    private final InfluenceRelation relation;
+    private final Supplier<Graph<InfluenceUnit, DefaultEdge>> expansion;
+    private final Set<PhysicsProcess> processes;
+    private final Set<Laboratory> laboratories;
+    private Graph<InfluenceUnit, DefaultEdge> graph;
+    private BitsetInfluence bitsets;
 
     private InfluenceMap(Graph<InfluenceUnit, DefaultEdge> graph) {
+        this(new MaterializedInfluence(graph), () -> graph,
+                processesOf(Set.of(), graph.vertexSet()), laboratoriesOf(Set.of(), graph.vertexSet()));
         this.graph = graph;
     }
 
+    private InfluenceMap(InfluenceRelation relation, Supplier<Graph<InfluenceUnit, DefaultEdge>> expansion,
+                         Set<PhysicsProcess> processes, Set<Laboratory> laboratories) {
+        this.relation = relation;
+        this.expansion = expansion;
+        this.processes = processes;
+        this.laboratories = laboratories;
+    }
+
     static InfluenceMap of(PhysicsInfluence physicsInfluence,
                            InfrastructureInfluence infrastructureInfluence,
                            Set<Laboratory> laboratories) {
@@ -30,6 +47,51 @@ class InfluenceMap {
         return new InfluenceMap(result);
     }
 
+    static InfluenceMap implicitOf(PhysicsInfluence physicsInfluence,
+                                   InfrastructureInfluence infrastructureInfluence,
+                                   Set<Laboratory> laboratories) {
+        Set<InfluenceUnit> constrained = infrastructureInfluence.asGraph().vertexSet();
+        return new InfluenceMap(
+                ProductInfluence.of(physicsInfluence, infrastructureInfluence, laboratories),
+                () -> of(physicsInfluence, infrastructureInfluence, laboratories).asGraph(),
+                processesOf(physicsInfluence.asGraph().vertexSet(), constrained),
+                laboratoriesOf(laboratories, constrained));
+    }
+
+    static InfluenceMap implicitOf(PhysicsInfluence physicsInfluence,
+                                   InfrastructureInfluence infrastructureInfluence,
+                                   LaboratoryAdjacency laboratoryAdjacency) {
+        Set<InfluenceUnit> constrained = infrastructureInfluence.asGraph().vertexSet();
+        return new InfluenceMap(
+                ProductInfluence.of(physicsInfluence, infrastructureInfluence, laboratoryAdjacency),
+                () -> of(physicsInfluence, infrastructureInfluence, laboratoryAdjacency).asGraph(),
+                processesOf(physicsInfluence.asGraph().vertexSet(), constrained),
+                laboratoriesOf(laboratoryAdjacency.asGraph().vertexSet(), constrained));
+    }
+
+    InfluenceMap encodedAsBitsets() {
+        BitsetInfluence encoded = bitsets();
+        InfluenceMap result = new InfluenceMap(encoded, this::asGraph, processes, laboratories);
+        result.bitsets = encoded;
+        return result;
+    }
+
+    private static Set<PhysicsProcess> processesOf(Set<PhysicsProcess> processes, Set<InfluenceUnit> units) {
+        Set<PhysicsProcess> result = new HashSet<>(processes);
+        for (InfluenceUnit unit : units) {
+            result.add(unit.process());
+        }
+        return result;
+    }
+
+    private static Set<Laboratory> laboratoriesOf(Set<Laboratory> laboratories, Set<InfluenceUnit> units) {
+        Set<Laboratory> result = new HashSet<>(laboratories);
+        for (InfluenceUnit unit : units) {
+            result.add(unit.laboratory());
+        }
+        return result;
+    }
+
     private static void addInfrastructure(InfrastructureInfluence infrastructureInfluence, Graph<InfluenceUnit, DefaultEdge> result) {
         Graph<InfluenceUnit, DefaultEdge> infra = infrastructureInfluence.asGraph();
         for (DefaultEdge edge : infra.edgeSet()) {
@@ -83,13 +145,25 @@ class InfluenceMap {
         return result;
     }
 
-    Graph<InfluenceUnit, DefaultEdge> asGraph() {
+    // w trybie niejawnym graf jest rozwijany dopiero przy pierwszym wywołaniu
+    synchronized Graph<InfluenceUnit, DefaultEdge> asGraph() {
+        if (graph == null) {
+            graph = expansion.get();
+        }
         return graph;
     }
 
+    Set<InfluenceUnit> successorsOf(InfluenceUnit unit) {
+        return relation.successorsOf(unit);
+    }
+
+    Set<InfluenceUnit> predecessorsOf(InfluenceUnit unit) {
+        return relation.predecessorsOf(unit);
+    }
+
     boolean influences(PhysicsProcess fromProcess, Laboratory fromLab,
                        PhysicsProcess toProcess, Laboratory toLab) {
-        return graph.containsEdge(
+        return relation.influences(
                 new InfluenceUnit(fromProcess, fromLab),
                 new InfluenceUnit(toProcess, toLab)
         );
@@ -99,6 +173,21 @@ class InfluenceMap {
         return influences(from.process(), from.laboratory(), to.process(), to.laboratory());
     }
 
+    ReservedUnits reservedUnits() {
+        return bitsets().reservedUnits();
+    }
+
+    int countInfluenced(Reservation reservation, ReservedUnits reserved) {
+        return bitsets().countInfluenced(reservation, reserved);
+    }
+
+    private synchronized BitsetInfluence bitsets() {
+        if (bitsets == null) {
+            bitsets = new BitsetInfluence(relation, processes, laboratories);
+        }
+        return bitsets;
+    }
+
     static Builder builder() {
         return new Builder();
     }
@@ -108,6 +197,8 @@ class InfluenceMap {
         private InfrastructureInfluence infrastructureInfluence;
         private Set<Laboratory> laboratories;
         private LaboratoryAdjacency laboratoryAdjacency;
+        private boolean implicit;
+        private boolean bitsets;
 
         Builder withPhysics(PhysicsInfluence physicsInfluence) {
             this.physicsInfluence = physicsInfluence;
@@ -129,7 +220,28 @@ class InfluenceMap {
             return this;
         }
 
+        Builder implicit() {
+            this.implicit = true;
+            return this;
+        }
+
+        Builder bitsets() {
+            this.bitsets = true;
+            return this;
+        }
+
         InfluenceMap build() {
+            InfluenceMap influenceMap = buildRelation();
+            return bitsets ? influenceMap.encodedAsBitsets() : influenceMap;
+        }
+
+        private InfluenceMap buildRelation() {
+            if (implicit) {
+                if (laboratoryAdjacency != null) {
+                    return implicitOf(physicsInfluence, infrastructureInfluence, laboratoryAdjacency);
+                }
+                return implicitOf(physicsInfluence, infrastructureInfluence, laboratories);
+            }
             if (laboratoryAdjacency != null) {
                 return of(physicsInfluence, infrastructureInfluence, laboratoryAdjacency);
             }
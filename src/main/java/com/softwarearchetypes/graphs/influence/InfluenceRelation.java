@@ -0,0 +1,12 @@
+package com.softwarearchetypes.graphs.influence;
+
+import java.util.Set;
+
+interface InfluenceRelation {
+
+    boolean influences(InfluenceUnit from, InfluenceUnit to);
+
+    Set<InfluenceUnit> successorsOf(InfluenceUnit unit);
+
+    Set<InfluenceUnit> predecessorsOf(InfluenceUnit unit);
+}
@@ -0,0 +1,158 @@
+package com.softwarearchetypes.graphs.influence;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class InfluenceZoneTracker {
+
+    private final InfluenceMap influenceMap;
+    private final Map<Reservation, Reservation> parent = new HashMap<>();
+    private final Map<Reservation, Set<Reservation>> membersOfRoot = new HashMap<>();
+    private final Map<Reservation, InfluenceZone> zoneOfRoot = new HashMap<>();
+
+    InfluenceZoneTracker(InfluenceMap influenceMap) {
+        this.influenceMap = influenceMap;
+    }
+
+    // bez budowania strefy - jej członkowie są kopiowani dopiero w zoneOf i zones
+    boolean add(Reservation reservation) {
+        if (parent.containsKey(reservation)) {
+            return false;
+        }
+        makeZone(reservation);
+        for (Reservation neighbour : reservedNeighboursOf(reservation)) {
+            union(reservation, neighbour);
+        }
+        return true;
+    }
+
+    // strefa bez anulowanej rezerwacji mogła się rozpaść - pozostałe strefy zostają nietknięte
+    boolean cancel(Reservation reservation) {
+        if (!parent.containsKey(reservation)) {
+            return false;
+        }
+        Reservation root = find(reservation);
+        Set<Reservation> members = membersOfRoot.remove(root);
+        zoneOfRoot.remove(root);
+        for (Reservation member : members) {
+            parent.remove(member);
+        }
+        members.remove(reservation);
+        rebuild(members);
+        return true;
+    }
+
+    InfluenceZone zoneOf(Reservation reservation) {
+        if (!parent.containsKey(reservation)) {
+            throw new IllegalArgumentException("Reservation " + reservation + " is not tracked");
+        }
+        Reservation root = find(reservation);
+        return zoneOfRoot.computeIfAbsent(root, key -> new InfluenceZone(membersOfRoot.get(key)));
+    }
+
+    Set<InfluenceZone> zones() {
+        return membersOfRoot.keySet().stream()
+                .map(this::zoneOf)
+                .collect(Collectors.toSet());
+    }
+
+    boolean contains(Reservation reservation) {
+        return parent.containsKey(reservation);
+    }
+
+    int size() {
+        return parent.size();
+    }
+
+    private void rebuild(Set<Reservation> members) {
+        Set<Reservation> unvisited = new HashSet<>(members);
+        for (Reservation start : members) {
+            if (!unvisited.remove(start)) {
+                continue;
+            }
+            makeZone(start);
+            Deque<Reservation> toVisit = new ArrayDeque<>();
+            toVisit.add(start);
+            while (!toVisit.isEmpty()) {
+                Reservation current = toVisit.poll();
+                for (Reservation neighbour : neighboursOf(current)) {
+                    if (unvisited.remove(neighbour)) {
+                        parent.put(neighbour, start);
+                        membersOfRoot.get(start).add(neighbour);
+                        toVisit.add(neighbour);
+                    }
+                }
+            }
+        }
+    }
+
+    private Set<Reservation> reservedNeighboursOf(Reservation reservation) {
+        Set<Reservation> reserved = new HashSet<>();
+        for (Reservation neighbour : neighboursOf(reservation)) {
+            if (parent.containsKey(neighbour)) {
+                reserved.add(neighbour);
+            }
+        }
+        return reserved;
+    }
+
+    private Set<Reservation> neighboursOf(Reservation reservation) {
+        Set<Reservation> neighbours = new HashSet<>();
+        for (InfluenceUnit unit : influenceMap.successorsOf(reservation.unit())) {
+            neighbours.add(Reservation.of(unit));
+        }
+        for (InfluenceUnit unit : influenceMap.predecessorsOf(reservation.unit())) {
+            neighbours.add(Reservation.of(unit));
+        }
+        neighbours.remove(reservation);
+        return neighbours;
+    }
+
+    private void makeZone(Reservation reservation) {
+        parent.put(reservation, reservation);
+        Set<Reservation> members = new HashSet<>();
+        members.add(reservation);
+        membersOfRoot.put(reservation, members);
+    }
+
+    private Reservation find(Reservation reservation) {
+        Reservation root = reservation;
+        while (!parent.get(root).equals(root)) {
+            root = parent.get(root);
+        }
+        while (!reservation.equals(root)) {
+            Reservation next = parent.put(reservation, root);
+            reservation = next;
+        }
+        return root;
+    }
+
+    // mniejsza strefa dołącza do większej, więc każda rezerwacja zmienia zbiór członków najwyżej log n razy
+    private void union(Reservation first, Reservation second) {
+        Reservation firstRoot = find(first);
+        Reservation secondRoot = find(second);
+        if (firstRoot.equals(secondRoot)) {
+            return;
+        }
+        Set<Reservation> firstMembers = membersOfRoot.get(firstRoot);
+        Set<Reservation> secondMembers = membersOfRoot.get(secondRoot);
+        if (firstMembers.size() < secondMembers.size()) {
+            Reservation swapRoot = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = swapRoot;
+            Set<Reservation> swapMembers = firstMembers;
+            firstMembers = secondMembers;
+            secondMembers = swapMembers;
+        }
+        parent.put(secondRoot, firstRoot);
+        firstMembers.addAll(secondMembers);
+        membersOfRoot.remove(secondRoot);
+        zoneOfRoot.remove(secondRoot);
+        zoneOfRoot.remove(firstRoot);
+    }
+}
@@ -0,0 +1,44 @@
+package com.softwarearchetypes.graphs.influence;
+
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.util.HashSet;
+import java.util.Set;
+
+class MaterializedInfluence implements InfluenceRelation {
+    private final Graph<InfluenceUnit, DefaultEdge> graph;
+
+    MaterializedInfluence(Graph<InfluenceUnit, DefaultEdge> graph) {
+        this.graph = graph;
+    }
+
+    @Override
+    public boolean influences(InfluenceUnit from, InfluenceUnit to) {
+        return graph.containsEdge(from, to);
+    }
+
+    @Override
+    public Set<InfluenceUnit> successorsOf(InfluenceUnit unit) {
+        if (!graph.containsVertex(unit)) {
+            return Set.of();
+        }
+        Set<InfluenceUnit> successors = new HashSet<>();
+        for (DefaultEdge edge : graph.outgoingEdgesOf(unit)) {
+            successors.add(graph.getEdgeTarget(edge));
+        }
+        return successors;
+    }
+
+    @Override
+    public Set<InfluenceUnit> predecessorsOf(InfluenceUnit unit) {
+        if (!graph.containsVertex(unit)) {
+            return Set.of();
+        }
+        Set<InfluenceUnit> predecessors = new HashSet<>();
+        for (DefaultEdge edge : graph.incomingEdgesOf(unit)) {
+            predecessors.add(graph.getEdgeSource(edge));
+        }
+        return predecessors;
+    }
+}
@@ -0,0 +1,109 @@
+package com.softwarearchetypes.graphs.influence;
+
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Iloczyn fizyki i relacji laboratoriów liczony przy zapytaniu, bez rozwijania wszystkich par jednostek.
+// Relacja laboratoriów to albo wszystkie pary z podanego zbioru, albo sąsiedztwo.
+class ProductInfluence implements InfluenceRelation {
+    private final Graph<PhysicsProcess, DefaultEdge> physics;
+    private final Set<Laboratory> laboratories;
+    private final Graph<Laboratory, DefaultEdge> adjacency;
+    private final MaterializedInfluence infrastructure;
+
+    private ProductInfluence(PhysicsInfluence physicsInfluence, Set<Laboratory> laboratories,
+                             LaboratoryAdjacency laboratoryAdjacency, InfrastructureInfluence infrastructureInfluence) {
+        this.physics = physicsInfluence.asGraph();
+        this.laboratories = laboratories;
+        this.adjacency = laboratoryAdjacency == null ? null : laboratoryAdjacency.asGraph();
+        this.infrastructure = new MaterializedInfluence(infrastructureInfluence.asGraph());
+    }
+
+    static ProductInfluence of(PhysicsInfluence physicsInfluence,
+                               InfrastructureInfluence infrastructureInfluence,
+                               Set<Laboratory> laboratories) {
+        return new ProductInfluence(physicsInfluence, Set.copyOf(laboratories), null, infrastructureInfluence);
+    }
+
+    static ProductInfluence of(PhysicsInfluence physicsInfluence,
+                               InfrastructureInfluence infrastructureInfluence,
+                               LaboratoryAdjacency laboratoryAdjacency) {
+        return new ProductInfluence(physicsInfluence, null, laboratoryAdjacency, infrastructureInfluence);
+    }
+
+    @Override
+    public boolean influences(InfluenceUnit from, InfluenceUnit to) {
+        return physics.containsEdge(from.process(), to.process()) && laboratoriesRelated(from.laboratory(), to.laboratory())
+                || infrastructure.influences(from, to);
+    }
+
+    @Override
+    public Set<InfluenceUnit> successorsOf(InfluenceUnit unit) {
+        Set<InfluenceUnit> successors = new HashSet<>(infrastructure.successorsOf(unit));
+        if (!physics.containsVertex(unit.process())) {
+            return successors;
+        }
+        Set<Laboratory> targetLabs = laboratoriesAfter(unit.laboratory());
+        for (DefaultEdge edge : physics.outgoingEdgesOf(unit.process())) {
+            PhysicsProcess target = physics.getEdgeTarget(edge);
+            for (Laboratory lab : targetLabs) {
+                successors.add(new InfluenceUnit(target, lab));
+            }
+        }
+        return successors;
+    }
+
+    @Override
+    public Set<InfluenceUnit> predecessorsOf(InfluenceUnit unit) {
+        Set<InfluenceUnit> predecessors = new HashSet<>(infrastructure.predecessorsOf(unit));
+        if (!physics.containsVertex(unit.process())) {
+            return predecessors;
+        }
+        Set<Laboratory> sourceLabs = laboratoriesBefore(unit.laboratory());
+        for (DefaultEdge edge : physics.incomingEdgesOf(unit.process())) {
+            PhysicsProcess source = physics.getEdgeSource(edge);
+            for (Laboratory lab : sourceLabs) {
+                predecessors.add(new InfluenceUnit(source, lab));
+            }
+        }
+        return predecessors;
+    }
+
+    private boolean laboratoriesRelated(Laboratory from, Laboratory to) {
+        if (adjacency == null) {
+            return laboratories.contains(from) && laboratories.contains(to);
+        }
+        return adjacency.containsEdge(from, to);
+    }
+
+    private Set<Laboratory> laboratoriesAfter(Laboratory laboratory) {
+        if (adjacency == null) {
+            return laboratories.contains(laboratory) ? laboratories : Set.of();
+        }
+        if (!adjacency.containsVertex(laboratory)) {
+            return Set.of();
+        }
+        Set<Laboratory> after = new HashSet<>();
+        for (DefaultEdge edge : adjacency.outgoingEdgesOf(laboratory)) {
+            after.add(adjacency.getEdgeTarget(edge));
+        }
+        return after;
+    }
+
+    private Set<Laboratory> laboratoriesBefore(Laboratory laboratory) {
+        if (adjacency == null) {
+            return laboratories.contains(laboratory) ? laboratories : Set.of();
+        }
+        if (!adjacency.containsVertex(laboratory)) {
+            return Set.of();
+        }
+        Set<Laboratory> before = new HashSet<>();
+        for (DefaultEdge edge : adjacency.incomingEdgesOf(laboratory)) {
+            before.add(adjacency.getEdgeSource(edge));
+        }
+        return before;
+    }
+}
@@ -1,3 +1,12 @@
 package com.softwarearchetypes.graphs.influence;
 
-record Reservation(PhysicsProcess process, Laboratory laboratory) { }
+record Reservation(PhysicsProcess process, Laboratory laboratory) {
+
+    static Reservation of(InfluenceUnit unit) {
+        return new Reservation(unit.process(), unit.laboratory());
+    }
+
+    InfluenceUnit unit() {
+        return new InfluenceUnit(process, laboratory);
+    }
+}
@@ -0,0 +1,55 @@
+package com.softwarearchetypes.graphs.influence;
+
+// Zbiór istniejących rezerwacji jako bitset jednostek mapy, na której powstał.
+// Rezerwacje spoza procesów i laboratoriów mapy są pomijane - nic na nie nie wpływa.
+class ReservedUnits {
+    private final BitsetInfluence influence;
+    private final long[] words;
+    private int size;
+
+    ReservedUnits(BitsetInfluence influence, int words) {
+        this.influence = influence;
+        this.words = new long[words];
+    }
+
+    boolean add(Reservation reservation) {
+        int index = influence.indexOf(reservation.process(), reservation.laboratory());
+        if (index == BitsetInfluence.ABSENT || contains(index)) {
+            return false;
+        }
+        words[index >>> 6] |= 1L << index;
+        size++;
+        return true;
+    }
+
+    boolean remove(Reservation reservation) {
+        int index = influence.indexOf(reservation.process(), reservation.laboratory());
+        if (index == BitsetInfluence.ABSENT || !contains(index)) {
+            return false;
+        }
+        words[index >>> 6] &= ~(1L << index);
+        size--;
+        return true;
+    }
+
+    boolean contains(Reservation reservation) {
+        int index = influence.indexOf(reservation.process(), reservation.laboratory());
+        return index != BitsetInfluence.ABSENT && contains(index);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long[] words() {
+        return words;
+    }
+
+    boolean isIndexedBy(BitsetInfluence other) {
+        return influence == other;
+    }
+
+    private boolean contains(int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+}
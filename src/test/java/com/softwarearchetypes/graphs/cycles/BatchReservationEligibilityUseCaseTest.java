@@ -4,6 +4,8 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.FAILURE;
 import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.SUCCESS;
@@ -196,6 +198,77 @@ class BatchReservationEligibilityUseCaseTest {
         assertEquals(userY, findSlotOwner(slotB));
     }
 
+    @Test
+    @DisplayName("potokowy batch widzi właścicieli zapisanych przez poprzedni batch")
+    void pipelinedBatchSeesOwnersCommittedByPreviousBatch() throws Exception {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        OwnerId userX = OwnerId.of("UserX");
+        OwnerId userY = OwnerId.of("UserY");
+        OwnerId userZ = OwnerId.of("UserZ");
+
+        thereIsSlotOwnedBy(slotA, userX);
+        thereIsSlotOwnedBy(slotB, userY);
+        thereIsSlotOwnedBy(slotC, userZ);
+
+        Eligibility eligibility = new Eligibility();
+        eligibility.markTransferEligible(userX, userY);
+        eligibility.markTransferEligible(userY, userX);
+        eligibility.markTransferEligible(userY, userZ);
+        eligibility.markTransferEligible(userZ, userY);
+
+        // when
+        CompletableFuture<BatchReservationResult> first = batchReservationUseCase.executeAllAsync(List.of(
+                new ReservationChangeRequest(slotA, slotB, userX),
+                new ReservationChangeRequest(slotB, slotA, userY)
+        ), eligibility);
+        // po pierwszym batchu SlotA należy do UserY, więc może go wymienić z UserZ
+        CompletableFuture<BatchReservationResult> second = batchReservationUseCase.executeAllAsync(List.of(
+                new ReservationChangeRequest(slotA, slotC, userY),
+                new ReservationChangeRequest(slotC, slotA, userZ)
+        ), eligibility);
+
+        // then
+        assertEquals(SUCCESS, first.get(5, TimeUnit.SECONDS).status());
+        assertEquals(SUCCESS, second.get(5, TimeUnit.SECONDS).status());
+
+        // and
+        assertEquals(userZ, findSlotOwner(slotA));
+        assertEquals(userX, findSlotOwner(slotB));
+        assertEquals(userY, findSlotOwner(slotC));
+    }
+
+    @Test
+    @DisplayName("uprawnienia sprawdzane są dla właściciela slotu, a nie dla zgłaszającego")
+    void eligibilityIsCheckedForSlotOwnerNotRequester() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId userX = OwnerId.of("UserX");
+        OwnerId userY = OwnerId.of("UserY");
+        OwnerId operator = OwnerId.of("Operator");
+
+        thereIsSlotOwnedBy(slotA, userX);
+        thereIsSlotOwnedBy(slotB, userY);
+
+        Eligibility eligibility = new Eligibility();
+        eligibility.markTransferEligible(userX, userY);
+        eligibility.markTransferEligible(userY, userX);
+
+        // when
+        BatchReservationResult result = batchReservationUseCase.execute(List.of(
+                new ReservationChangeRequest(slotA, slotB, userX),
+                new ReservationChangeRequest(slotB, slotA, operator)
+        ), eligibility);
+
+        // then
+        assertEquals(SUCCESS, result.status());
+        assertEquals(operator, findSlotOwner(slotA));
+        assertEquals(userX, findSlotOwner(slotB));
+    }
+
     Slot thereIsSlotOwnedBy(SlotId slotId, OwnerId owner) {
         Slot slot = Slot.create(slotId, owner);
         slotRepository.save(slot);
@@ -3,12 +3,27 @@ package com.softwarearchetypes.graphs.cycles;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.FAILURE;
 import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.SUCCESS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class BatchReservationUseCaseTest {
 
@@ -139,6 +154,337 @@ class BatchReservationUseCaseTest {
         assertEquals(userX, findSlotOwner(slotA));
     }
 
+    @Test
+    @DisplayName("executes all disjoint cycles from one batch in a single commit")
+    void executesAllDisjointCyclesFromOneBatch() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        SlotId slotD = SlotId.of("SlotD");
+        SlotId slotE = SlotId.of("SlotE");
+        SlotId slotF = SlotId.of("SlotF");
+        OwnerId userA = OwnerId.of("UserA");
+        OwnerId userB = OwnerId.of("UserB");
+        OwnerId userC = OwnerId.of("UserC");
+        OwnerId userD = OwnerId.of("UserD");
+        OwnerId userE = OwnerId.of("UserE");
+        OwnerId userF = OwnerId.of("UserF");
+
+        thereIsSlotOwnedBy(slotA, userA);
+        thereIsSlotOwnedBy(slotB, userB);
+        thereIsSlotOwnedBy(slotC, userC);
+        thereIsSlotOwnedBy(slotD, userD);
+        thereIsSlotOwnedBy(slotE, userE);
+        thereIsSlotOwnedBy(slotF, userF);
+
+        // when
+        BatchReservationResult result = batchReservationUseCase.executeAll(List.of(
+                new ReservationChangeRequest(slotA, slotB, userA),
+                new ReservationChangeRequest(slotB, slotA, userB),
+                new ReservationChangeRequest(slotC, slotD, userC),
+                new ReservationChangeRequest(slotD, slotE, userD),
+                new ReservationChangeRequest(slotE, slotC, userE),
+                new ReservationChangeRequest(slotF, slotA, userF)
+        ));
+
+        // then
+        assertEquals(SUCCESS, result.status());
+        assertEquals(2, result.cycles().size());
+        assertEquals(5, result.executedRequests().size());
+
+        // and
+        assertEquals(userB, findSlotOwner(slotA));
+        assertEquals(userA, findSlotOwner(slotB));
+        assertEquals(userE, findSlotOwner(slotC));
+        assertEquals(userC, findSlotOwner(slotD));
+        assertEquals(userD, findSlotOwner(slotE));
+        assertEquals(userF, findSlotOwner(slotF));
+    }
+
+    @Test
+    @DisplayName("executes cycles from many independent islands of one batch")
+    void executesCyclesFromManyIndependentIslands() {
+        // given
+        int islands = 3_000;
+        List<ReservationChangeRequest> requests = new ArrayList<>();
+        for (int island = 0; island < islands; island++) {
+            SlotId slotA = SlotId.of("SlotA" + island);
+            SlotId slotB = SlotId.of("SlotB" + island);
+            OwnerId userX = OwnerId.of("UserX" + island);
+            OwnerId userY = OwnerId.of("UserY" + island);
+            thereIsSlotOwnedBy(slotA, userX);
+            thereIsSlotOwnedBy(slotB, userY);
+            requests.add(new ReservationChangeRequest(slotA, slotB, userX));
+            requests.add(new ReservationChangeRequest(slotB, slotA, userY));
+        }
+
+        // when
+        BatchReservationResult result = batchReservationUseCase.executeAll(requests);
+
+        // then
+        assertEquals(SUCCESS, result.status());
+        assertEquals(islands, result.cycles().size());
+        assertEquals(OwnerId.of("UserY0"), findSlotOwner(SlotId.of("SlotA0")));
+        assertEquals(OwnerId.of("UserX2999"), findSlotOwner(SlotId.of("SlotB2999")));
+    }
+
+    @Test
+    @DisplayName("executes only cycles within the length limit")
+    void executesOnlyCyclesWithinLengthLimit() {
+        // given
+        List<ReservationChangeRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            thereIsSlotOwnedBy(SlotId.of("Long" + i), OwnerId.of("LongUser" + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            requests.add(new ReservationChangeRequest(SlotId.of("Long" + i), SlotId.of("Long" + (i + 1) % 5), OwnerId.of("LongUser" + i)));
+        }
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId userX = OwnerId.of("UserX");
+        OwnerId userY = OwnerId.of("UserY");
+        thereIsSlotOwnedBy(slotA, userX);
+        thereIsSlotOwnedBy(slotB, userY);
+        requests.add(new ReservationChangeRequest(slotA, slotB, userX));
+        requests.add(new ReservationChangeRequest(slotB, slotA, userY));
+
+        // when
+        BatchReservationResult result = batchReservationUseCase.executeAll(requests, 4);
+
+        // then
+        assertEquals(SUCCESS, result.status());
+        assertEquals(1, result.cycles().size());
+        assertEquals(userY, findSlotOwner(slotA));
+        assertEquals(OwnerId.of("LongUser0"), findSlotOwner(SlotId.of("Long0")));
+    }
+
+    @Test
+    @DisplayName("clears ranked preferences with top trading cycles in one commit")
+    void clearsRankedPreferencesWithTopTradingCycles() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+        OwnerId charlie = OwnerId.of("Charlie");
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        thereIsSlotOwnedBy(slotC, charlie);
+
+        // when
+        BatchReservationResult result = batchReservationUseCase.executeTopTradingCycles(List.of(
+                new ReservationPreference(slotA, alice, List.of(slotB, slotC)),
+                new ReservationPreference(slotB, bob, List.of(slotA)),
+                new ReservationPreference(slotC, charlie, List.of(slotA, slotB)),
+                new ReservationPreference(slotC, bob, List.of(slotA))
+        ));
+
+        // then
+        assertEquals(SUCCESS, result.status());
+        assertEquals(1, result.cycles().size());
+        assertEquals(bob, findSlotOwner(slotA));
+        assertEquals(alice, findSlotOwner(slotB));
+        assertEquals(charlie, findSlotOwner(slotC));
+    }
+
+    @Test
+    @DisplayName("top trading cycles keep the first of several preferences offering the same slot")
+    void topTradingCyclesKeepFirstPreferenceOfferingSameSlot() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+        OwnerId charlie = OwnerId.of("Charlie");
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        thereIsSlotOwnedBy(slotC, charlie);
+
+        // when
+        BatchReservationResult result = batchReservationUseCase.executeTopTradingCycles(List.of(
+                new ReservationPreference(slotA, alice, List.of(slotB)),
+                new ReservationPreference(slotB, bob, List.of(slotA)),
+                new ReservationPreference(slotA, alice, List.of(slotC)),
+                new ReservationPreference(slotC, charlie, List.of(slotA))
+        ));
+
+        // then
+        assertEquals(SUCCESS, result.status());
+        assertEquals(1, result.cycles().size());
+        assertEquals(bob, findSlotOwner(slotA));
+        assertEquals(alice, findSlotOwner(slotB));
+        assertEquals(charlie, findSlotOwner(slotC));
+    }
+
+    @Test
+    @DisplayName("executes chains ending in free slots together with cycles")
+    void executesChainsEndingInFreeSlotsTogetherWithCycles() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        SlotId freeSlot = SlotId.of("FreeSlot");
+        SlotId slotX = SlotId.of("SlotX");
+        SlotId slotY = SlotId.of("SlotY");
+        OwnerId userA = OwnerId.of("UserA");
+        OwnerId userB = OwnerId.of("UserB");
+        OwnerId userC = OwnerId.of("UserC");
+        OwnerId userX = OwnerId.of("UserX");
+        OwnerId userY = OwnerId.of("UserY");
+        thereIsSlotOwnedBy(slotA, userA);
+        thereIsSlotOwnedBy(slotB, userB);
+        thereIsSlotOwnedBy(slotC, userC);
+        thereIsFreeSlot(freeSlot);
+        thereIsSlotOwnedBy(slotX, userX);
+        thereIsSlotOwnedBy(slotY, userY);
+
+        // when
+        BatchReservationResult result = batchReservationUseCase.executeAllWithChains(List.of(
+                new ReservationChangeRequest(slotA, slotB, userA),
+                new ReservationChangeRequest(slotB, slotC, userB),
+                new ReservationChangeRequest(slotC, freeSlot, userC),
+                new ReservationChangeRequest(slotX, slotY, userX),
+                new ReservationChangeRequest(slotY, slotX, userY)
+        ));
+
+        // then
+        assertEquals(SUCCESS, result.status());
+        assertEquals(5, result.executedRequests().size());
+        assertEquals(OwnerId.empty(), findSlotOwner(slotA));
+        assertEquals(userA, findSlotOwner(slotB));
+        assertEquals(userB, findSlotOwner(slotC));
+        assertEquals(userC, findSlotOwner(freeSlot));
+        assertEquals(userY, findSlotOwner(slotX));
+    }
+
+    @Test
+    @DisplayName("chain ending in a missing slot is not executed")
+    void chainEndingInMissingSlotIsNotExecuted() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId missingSlot = SlotId.of("MissingSlot");
+        SlotId freeSlot = SlotId.of("FreeSlot");
+        OwnerId userA = OwnerId.of("UserA");
+        OwnerId userB = OwnerId.of("UserB");
+        thereIsSlotOwnedBy(slotA, userA);
+        thereIsSlotOwnedBy(slotB, userB);
+        thereIsFreeSlot(freeSlot);
+
+        // when
+        BatchReservationResult result = batchReservationUseCase.executeAllWithChains(List.of(
+                new ReservationChangeRequest(slotA, missingSlot, userA),
+                new ReservationChangeRequest(slotB, freeSlot, userB)
+        ));
+
+        // then
+        assertEquals(SUCCESS, result.status());
+        assertEquals(1, result.executedRequests().size());
+        assertEquals(userA, findSlotOwner(slotA));
+        assertEquals(userB, findSlotOwner(freeSlot));
+    }
+
+    @Test
+    @DisplayName("pipelined batches commit in submission order")
+    void pipelinedBatchesCommitInSubmissionOrder() throws Exception {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId userX = OwnerId.of("UserX");
+        OwnerId userY = OwnerId.of("UserY");
+
+        thereIsSlotOwnedBy(slotA, userX);
+        thereIsSlotOwnedBy(slotB, userY);
+
+        // when
+        CompletableFuture<BatchReservationResult> swap = batchReservationUseCase.executeAllAsync(List.of(
+                new ReservationChangeRequest(slotA, slotB, userX),
+                new ReservationChangeRequest(slotB, slotA, userY)
+        ));
+        CompletableFuture<BatchReservationResult> swapBack = batchReservationUseCase.executeAllAsync(List.of(
+                new ReservationChangeRequest(slotA, slotB, userY),
+                new ReservationChangeRequest(slotB, slotA, userX)
+        ));
+
+        // then
+        assertEquals(SUCCESS, swap.get(5, TimeUnit.SECONDS).status());
+        assertEquals(SUCCESS, swapBack.get(5, TimeUnit.SECONDS).status());
+
+        // and
+        assertEquals(userX, findSlotOwner(slotA));
+        assertEquals(userY, findSlotOwner(slotB));
+    }
+
+    @Test
+    @DisplayName("closing shuts down only the executor the use case created itself")
+    void closingShutsDownOnlyOwnExecutor() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId userX = OwnerId.of("UserX");
+        OwnerId userY = OwnerId.of("UserY");
+
+        thereIsSlotOwnedBy(slotA, userX);
+        thereIsSlotOwnedBy(slotB, userY);
+        ExecutorService injected = Executors.newSingleThreadExecutor();
+
+        // when
+        batchReservationUseCase.close();
+        new BatchReservationUseCase(slotRepository, ForkJoinPool.commonPool(), RetryPolicy.defaultPolicy(), injected).close();
+
+        // then
+        CompletableFuture<BatchReservationResult> rejected = batchReservationUseCase.executeAllAsync(List.of(
+                new ReservationChangeRequest(slotA, slotB, userX),
+                new ReservationChangeRequest(slotB, slotA, userY)
+        ));
+        assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertFalse(injected.isShutdown());
+        assertEquals(userX, findSlotOwner(slotA));
+        injected.shutdown();
+    }
+
+    @Test
+    @DisplayName("closing waits for a pipelined batch that is still in flight")
+    void closingWaitsForPipelinedBatchInFlight() throws Exception {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId userX = OwnerId.of("UserX");
+        OwnerId userY = OwnerId.of("UserY");
+
+        thereIsSlotOwnedBy(slotA, userX);
+        thereIsSlotOwnedBy(slotB, userY);
+        Eligibility eligibility = new Eligibility();
+        eligibility.markTransferEligible(userX, userY);
+        eligibility.markTransferEligible(userY, userX);
+        BlockingFirstRead blockingRepository = new BlockingFirstRead(slotRepository);
+        BatchReservationUseCase useCase = new BatchReservationUseCase(blockingRepository);
+        CompletableFuture<BatchReservationResult> swap = useCase.executeAllAsync(List.of(
+                new ReservationChangeRequest(slotA, slotB, userX),
+                new ReservationChangeRequest(slotB, slotA, userY)
+        ), eligibility);
+        assertTrue(blockingRepository.reading.await(5, TimeUnit.SECONDS));
+
+        // when
+        Thread closing = new Thread(useCase::close);
+        closing.start();
+        // zamykanie albo już czeka na batch, albo (bez czekania) zdążyło zamknąć executor
+        while (closing.getState() != Thread.State.WAITING && closing.getState() != Thread.State.TERMINATED) {
+            Thread.onSpinWait();
+        }
+        blockingRepository.release.countDown();
+        closing.join(5_000);
+
+        // then
+        assertFalse(closing.isAlive());
+        assertEquals(SUCCESS, swap.get(5, TimeUnit.SECONDS).status());
+        assertEquals(userY, findSlotOwner(slotA));
+        assertEquals(userX, findSlotOwner(slotB));
+    }
+
     Slot thereIsSlotOwnedBy(SlotId slotId, OwnerId owner) {
         Slot slot = Slot.create(slotId, owner);
         slotRepository.save(slot);
@@ -154,4 +500,42 @@ class BatchReservationUseCaseTest {
     OwnerId findSlotOwner(SlotId slotId) {
         return slotRepository.findById(slotId).orElseThrow().getOwner();
     }
-}
\ No newline at end of file
+
+
+    // pierwszy odczyt czeka na sygnał, żeby batch był na pewno w trakcie, gdy zamykamy use case
+    static class BlockingFirstRead implements SlotRepository {
+        private final SlotRepository delegate;
+        private final CountDownLatch reading = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingFirstRead(SlotRepository delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Optional<Slot> findById(SlotId slotId) {
+            return delegate.findById(slotId);
+        }
+
+        @Override
+        public void save(Slot slot) {
+            delegate.save(slot);
+        }
+
+        @Override
+        public void saveAll(Collection<Slot> values) {
+            delegate.saveAll(values);
+        }
+
+        @Override
+        public Map<SlotId, Slot> findAll(Set<SlotId> allSlotIds) {
+            reading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return delegate.findAll(allSlotIds);
+        }
+    }
+}
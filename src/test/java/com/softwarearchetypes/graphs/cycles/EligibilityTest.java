@@ -3,6 +3,9 @@ package com.softwarearchetypes.graphs.cycles;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class EligibilityTest {
@@ -85,4 +88,183 @@ class EligibilityTest {
         assertTrue(eligibility.isTransferEligible(bob, charlie));
         assertTrue(eligibility.isTransferEligible(charlie, alice));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("właściciel z wieloma uprawnieniami zachowuje je po przejściu na bitset")
+    void ownerWithManyTransfersKeepsThemInDenseRow() {
+        // given
+        Eligibility eligibility = new Eligibility();
+        OwnerId alice = OwnerId.of("Alice");
+        for (int i = 0; i < 1_000; i++) {
+            eligibility.markTransferEligible(alice, OwnerId.of("User" + i));
+        }
+
+        // when
+        for (int i = 0; i < 1_000; i += 2) {
+            eligibility.markTransferIneligible(alice, OwnerId.of("User" + i));
+        }
+
+        // then
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(i % 2 == 1, eligibility.isTransferEligible(alice, OwnerId.of("User" + i)));
+        }
+        assertFalse(eligibility.isTransferEligible(OwnerId.of("User1"), alice));
+    }
+
+    @Test
+    @DisplayName("właściciel, któremu zostało kilka uprawnień, wraca na hash-set bez ich utraty")
+    void ownerLeftWithFewTransfersKeepsThemAfterLeavingDenseRow() {
+        // given
+        Eligibility eligibility = new Eligibility();
+        OwnerId alice = OwnerId.of("Alice");
+        for (int i = 0; i < 1_000; i++) {
+            eligibility.markTransferEligible(alice, OwnerId.of("User" + i));
+        }
+
+        // when
+        for (int i = 0; i < 1_000; i++) {
+            if (i % 100 != 7) {
+                eligibility.markTransferIneligible(alice, OwnerId.of("User" + i));
+            }
+        }
+        eligibility.markTransferEligible(alice, OwnerId.of("User500"));
+
+        // then
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(i % 100 == 7 || i == 500, eligibility.isTransferEligible(alice, OwnerId.of("User" + i)));
+        }
+    }
+
+    @Test
+    @DisplayName("migawka nie widzi zmian uprawnień wprowadzonych po jej zrobieniu")
+    void snapshotDoesNotSeeLaterChanges() {
+        // given
+        Eligibility eligibility = new Eligibility();
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+        OwnerId charlie = OwnerId.of("Charlie");
+        eligibility.markTransferEligible(alice, bob);
+        eligibility.markTransferEligible(bob, alice);
+        Eligibility snapshot = eligibility.snapshot();
+
+        // when
+        eligibility.markTransferIneligible(alice, bob);
+        eligibility.markTransferEligible(bob, charlie);
+
+        // then
+        assertTrue(snapshot.isTransferEligible(alice, bob));
+        assertFalse(snapshot.isTransferEligible(bob, charlie));
+        assertNotEquals(Eligibility.NO_COMPONENT, snapshot.cycleComponentOf(alice));
+        assertEquals(Eligibility.NO_COMPONENT, eligibility.cycleComponentOf(alice));
+        assertNotSame(snapshot, eligibility.snapshot());
+        assertSame(eligibility.snapshot(), eligibility.snapshot());
+    }
+
+    @Test
+    @DisplayName("każda z kolejnych migawek zachowuje wiersz z chwili, w której ją zrobiono")
+    void everySuccessiveSnapshotKeepsRowFromItsOwnMoment() {
+        // given
+        Eligibility eligibility = new Eligibility();
+        OwnerId alice = OwnerId.of("Alice");
+        List<Eligibility> snapshots = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 300; i++) {
+            eligibility.markTransferEligible(alice, OwnerId.of("User" + i));
+            snapshots.add(eligibility.snapshot());
+        }
+        for (int i = 0; i < 300; i += 2) {
+            eligibility.markTransferIneligible(alice, OwnerId.of("User" + i));
+        }
+
+        // then
+        for (int taken = 0; taken < snapshots.size(); taken++) {
+            for (int i = 0; i < 300; i++) {
+                assertEquals(i <= taken, snapshots.get(taken).isTransferEligible(alice, OwnerId.of("User" + i)));
+            }
+        }
+        for (int i = 0; i < 300; i++) {
+            assertEquals(i % 2 == 1, eligibility.isTransferEligible(alice, OwnerId.of("User" + i)));
+        }
+    }
+
+    @Test
+    @DisplayName("z przekazań jednego właściciela zostają tylko te do uprawnionych celów")
+    void onlyTransfersToEligibleTargetsRemain() {
+        // given
+        Eligibility eligibility = new Eligibility();
+        OwnerId alice = OwnerId.of("Alice");
+        List<OwnerId> targets = new ArrayList<>();
+        List<String> requests = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            OwnerId user = OwnerId.of("User" + i);
+            if (i % 3 == 0) {
+                eligibility.markTransferEligible(alice, user);
+            } else {
+                eligibility.markTransferEligible(user, alice);
+            }
+            targets.add(user);
+            requests.add("request" + i);
+        }
+        targets.add(OwnerId.of("Unknown"));
+        requests.add("unknown");
+
+        // when
+        List<String> eligible = eligibility.eligibleTransfers(alice, targets, requests);
+
+        // then
+        assertEquals(67, eligible.size());
+        assertTrue(eligible.contains("request0"));
+        assertTrue(eligible.contains("request198"));
+        assertFalse(eligible.contains("request1"));
+        assertFalse(eligible.contains("unknown"));
+    }
+
+    @Test
+    @DisplayName("domknięcie cyklu uprawnień scala składowe, a jego przerwanie je dzieli")
+    void closingEligibilityCycleMergesComponentsAndBreakingItSplitsThem() {
+        // given
+        Eligibility eligibility = new Eligibility();
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+        OwnerId charlie = OwnerId.of("Charlie");
+        eligibility.markTransferEligible(alice, bob);
+        eligibility.markTransferEligible(bob, charlie);
+
+        // when
+        eligibility.markTransferEligible(charlie, alice);
+
+        // then
+        int component = eligibility.cycleComponentOf(alice);
+        assertNotEquals(Eligibility.NO_COMPONENT, component);
+        assertEquals(component, eligibility.cycleComponentOf(bob));
+        assertEquals(component, eligibility.cycleComponentOf(charlie));
+
+        // and
+        eligibility.markTransferIneligible(bob, charlie);
+        assertEquals(Eligibility.NO_COMPONENT, eligibility.cycleComponentOf(alice));
+        assertEquals(Eligibility.NO_COMPONENT, eligibility.cycleComponentOf(charlie));
+        assertEquals(Eligibility.NO_COMPONENT, eligibility.cycleComponentOf(OwnerId.of("Unknown")));
+    }
+
+    @Test
+    @DisplayName("usunięcie krawędzi zostawia razem to, co wciąż jest na cyklu")
+    void removingEdgeKeepsTogetherWhatIsStillOnCycle() {
+        // given
+        Eligibility eligibility = new Eligibility();
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+        OwnerId charlie = OwnerId.of("Charlie");
+        eligibility.markTransferEligible(alice, bob);
+        eligibility.markTransferEligible(bob, alice);
+        eligibility.markTransferEligible(bob, charlie);
+        eligibility.markTransferEligible(charlie, bob);
+
+        // when
+        eligibility.markTransferIneligible(charlie, bob);
+
+        // then
+        assertEquals(eligibility.cycleComponentOf(alice), eligibility.cycleComponentOf(bob));
+        assertEquals(Eligibility.NO_COMPONENT, eligibility.cycleComponentOf(charlie));
+    }
+}
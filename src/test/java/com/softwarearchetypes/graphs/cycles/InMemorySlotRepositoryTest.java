@@ -0,0 +1,175 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.FAILURE;
+import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.SUCCESS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemorySlotRepositoryTest {
+
+    SlotRepository slotRepository = new InMemorySlotRepository();
+
+    @Test
+    @DisplayName("zapis z nieaktualną wersją jest odrzucany w całości")
+    void staleWriteIsRejectedAtomically() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        slotRepository.save(Slot.create(slotA, OwnerId.of("Alice")));
+        slotRepository.save(Slot.create(slotB, OwnerId.of("Bob")));
+        Map<SlotId, Slot> firstBatch = slotRepository.findAll(Set.of(slotA, slotB));
+        Map<SlotId, Slot> secondBatch = slotRepository.findAll(Set.of(slotA, slotB));
+
+        // and
+        firstBatch.get(slotA).assignTo(OwnerId.of("Charlie"));
+        slotRepository.saveAll(List.of(firstBatch.get(slotA)));
+
+        // when
+        secondBatch.get(slotA).assignTo(OwnerId.of("Diana"));
+        secondBatch.get(slotB).assignTo(OwnerId.of("Diana"));
+        StaleSlotException exception = assertThrows(StaleSlotException.class,
+                () -> slotRepository.saveAll(secondBatch.values()));
+
+        // then
+        assertEquals(Set.of(slotA), exception.staleSlots());
+        assertEquals(OwnerId.of("Charlie"), findSlotOwner(slotA));
+        assertEquals(OwnerId.of("Bob"), findSlotOwner(slotB));
+        assertEquals(1, slotRepository.findById(slotA).orElseThrow().version());
+    }
+
+    @Test
+    @DisplayName("rozłączne batche zapisują się równolegle")
+    void disjointBatchesCommitConcurrently() throws Exception {
+        // given
+        int batches = 32;
+        for (int batch = 0; batch < batches; batch++) {
+            slotRepository.save(Slot.create(SlotId.of("SlotA" + batch), OwnerId.of("UserX" + batch)));
+            slotRepository.save(Slot.create(SlotId.of("SlotB" + batch), OwnerId.of("UserY" + batch)));
+        }
+        BatchReservationUseCase useCase = new BatchReservationUseCase(slotRepository);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // when
+        List<Future<BatchReservationResult>> results = new ArrayList<>();
+        for (int batch = 0; batch < batches; batch++) {
+            SlotId slotA = SlotId.of("SlotA" + batch);
+            SlotId slotB = SlotId.of("SlotB" + batch);
+            List<ReservationChangeRequest> requests = List.of(
+                    new ReservationChangeRequest(slotA, slotB, OwnerId.of("UserX" + batch)),
+                    new ReservationChangeRequest(slotB, slotA, OwnerId.of("UserY" + batch)));
+            results.add(executor.submit(() -> useCase.execute(requests)));
+        }
+
+        // then
+        for (Future<BatchReservationResult> result : results) {
+            assertEquals(SUCCESS, result.get(10, TimeUnit.SECONDS).status());
+        }
+        executor.shutdown();
+        assertEquals(OwnerId.of("UserY7"), findSlotOwner(SlotId.of("SlotA7")));
+    }
+
+    @Test
+    @DisplayName("batch jest ponawiany gdy inny batch zmienił ten sam slot")
+    void batchIsRetriedWhenAnotherBatchChangedSameSlot() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId userX = OwnerId.of("UserX");
+        OwnerId userY = OwnerId.of("UserY");
+        slotRepository.save(Slot.create(slotA, userX));
+        slotRepository.save(Slot.create(slotB, userY));
+        SlotRepository racingRepository = new ConcurrentWriterBeforeFirstSave(slotRepository, slotA);
+
+        // when
+        BatchReservationResult result = new BatchReservationUseCase(racingRepository).execute(List.of(
+                new ReservationChangeRequest(slotA, slotB, userX),
+                new ReservationChangeRequest(slotB, slotA, userY)
+        ));
+
+        // then
+        assertEquals(SUCCESS, result.status());
+        assertEquals(userY, findSlotOwner(slotA));
+        assertEquals(userX, findSlotOwner(slotB));
+        assertEquals(2, slotRepository.findById(slotA).orElseThrow().version());
+    }
+
+    @Test
+    @DisplayName("ponowiona próba nie nadpisuje slotu przejętego przez inny batch")
+    void retryDoesNotOverwriteSlotTakenOverByAnotherBatch() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId userX = OwnerId.of("UserX");
+        OwnerId userY = OwnerId.of("UserY");
+        OwnerId userZ = OwnerId.of("UserZ");
+        slotRepository.save(Slot.create(slotA, userX));
+        slotRepository.save(Slot.create(slotB, userY));
+        SlotRepository racingRepository = new ConcurrentWriterBeforeFirstSave(slotRepository, slotA, userZ);
+
+        // when
+        BatchReservationResult result = new BatchReservationUseCase(racingRepository).execute(List.of(
+                new ReservationChangeRequest(slotA, slotB, userX),
+                new ReservationChangeRequest(slotB, slotA, userY)
+        ));
+
+        // then
+        assertEquals(FAILURE, result.status());
+        assertEquals(userZ, findSlotOwner(slotA));
+        assertEquals(userY, findSlotOwner(slotB));
+    }
+
+    OwnerId findSlotOwner(SlotId slotId) {
+        return slotRepository.findById(slotId).orElseThrow().getOwner();
+    }
+
+    // symuluje inny batch, który zdążył zapisać slot między odczytem a zapisem
+    static class ConcurrentWriterBeforeFirstSave implements SlotRepository {
+        private final SlotRepository delegate;
+        private final SlotId contendedSlot;
+        private final OwnerId concurrentOwner;
+        private boolean raced;
+
+        ConcurrentWriterBeforeFirstSave(SlotRepository delegate, SlotId contendedSlot) {
+            this(delegate, contendedSlot, null);
+        }
+
+        ConcurrentWriterBeforeFirstSave(SlotRepository delegate, SlotId contendedSlot, OwnerId concurrentOwner) {
+            this.delegate = delegate;
+            this.contendedSlot = contendedSlot;
+            this.concurrentOwner = concurrentOwner;
+        }
+
+        @Override
+        public Optional<Slot> findById(SlotId slotId) {
+            return delegate.findById(slotId);
+        }
+
+        @Override
+        public void save(Slot slot) {
+            delegate.save(slot);
+        }
+
+        @Override
+        public void saveAll(Collection<Slot> values) {
+            if (!raced) {
+                raced = true;
+                Slot contended = delegate.findById(contendedSlot).orElseThrow();
+                if (concurrentOwner != null) {
+                    contended.assignTo(concurrentOwner);
+                }
+                delegate.saveAll(List.of(contended));
+            }
+            delegate.saveAll(values);
+        }
+
+        @Override
+        public Map<SlotId, Slot> findAll(Set<SlotId> allSlotIds) {
+            return delegate.findAll(allSlotIds);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.SUCCESS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournaledSlotRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    SlotId slotA = SlotId.of("SlotA");
+    SlotId slotB = SlotId.of("SlotB");
+    OwnerId alice = OwnerId.of("Alice");
+    OwnerId bob = OwnerId.of("Bob");
+
+    @Test
+    @DisplayName("wymiana zapisana w dzienniku przetrwa restart")
+    void exchangeSurvivesRestart() {
+        // given
+        try (JournaledSlotRepository repository = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            repository.save(Slot.create(slotA, alice));
+            repository.save(Slot.create(slotB, bob));
+
+            // when
+            BatchReservationResult result = new BatchReservationUseCase(repository).execute(List.of(
+                    new ReservationChangeRequest(slotA, slotB, alice),
+                    new ReservationChangeRequest(slotB, slotA, bob)));
+            assertEquals(SUCCESS, result.status());
+        }
+
+        // then
+        try (JournaledSlotRepository recovered = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            assertEquals(bob, recovered.findById(slotA).orElseThrow().getOwner());
+            assertEquals(alice, recovered.findById(slotB).orElseThrow().getOwner());
+            assertEquals(1, recovered.findById(slotA).orElseThrow().version());
+        }
+    }
+
+    @Test
+    @DisplayName("migawka i dziennik po niej odtwarzają się razem")
+    void snapshotAndJournalAfterItAreReplayedTogether() throws IOException {
+        // given
+        try (JournaledSlotRepository repository = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            repository.save(Slot.create(slotA, alice));
+            repository.save(Slot.create(slotB, bob));
+            repository.checkpoint();
+
+            // when
+            Slot slot = repository.findById(slotA).orElseThrow();
+            slot.assignTo(bob);
+            repository.saveAll(List.of(slot));
+        }
+
+        // then
+        assertTrue(Files.size(directory.resolve("slots.snapshot")) > 0);
+        try (JournaledSlotRepository recovered = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            assertEquals(bob, recovered.findById(slotA).orElseThrow().getOwner());
+            assertEquals(bob, recovered.findById(slotB).orElseThrow().getOwner());
+        }
+    }
+
+    @Test
+    @DisplayName("urwana ostatnia ramka dziennika jest pomijana")
+    void tornLastFrameIsSkipped() throws IOException {
+        // given
+        try (JournaledSlotRepository repository = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            repository.save(Slot.create(slotA, alice));
+        }
+        Files.write(directory.resolve("slots.journal"), new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        // when
+        try (JournaledSlotRepository recovered = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            recovered.save(Slot.create(slotB, bob));
+        }
+
+        // then
+        try (JournaledSlotRepository recovered = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            assertEquals(alice, recovered.findById(slotA).orElseThrow().getOwner());
+            assertEquals(bob, recovered.findById(slotB).orElseThrow().getOwner());
+        }
+    }
+
+    @Test
+    @DisplayName("równoległe batche są trwałe po wspólnym fsync")
+    void concurrentBatchesAreDurable() throws Exception {
+        // given
+        int batches = 64;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (JournaledSlotRepository repository = JournaledSlotRepository.open(new InMemorySlotRepository(), directory, 16)) {
+            for (int batch = 0; batch < batches; batch++) {
+                repository.save(Slot.create(SlotId.of("SlotA" + batch), OwnerId.of("UserX" + batch)));
+                repository.save(Slot.create(SlotId.of("SlotB" + batch), OwnerId.of("UserY" + batch)));
+            }
+            BatchReservationUseCase useCase = new BatchReservationUseCase(repository);
+
+            // when
+            List<Future<BatchReservationResult>> results = new ArrayList<>();
+            for (int batch = 0; batch < batches; batch++) {
+                SlotId from = SlotId.of("SlotA" + batch);
+                SlotId to = SlotId.of("SlotB" + batch);
+                List<ReservationChangeRequest> requests = List.of(
+                        new ReservationChangeRequest(from, to, OwnerId.of("UserX" + batch)),
+                        new ReservationChangeRequest(to, from, OwnerId.of("UserY" + batch)));
+                results.add(executor.submit(() -> useCase.execute(requests)));
+            }
+            for (Future<BatchReservationResult> result : results) {
+                assertEquals(SUCCESS, result.get(10, TimeUnit.SECONDS).status());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        try (JournaledSlotRepository recovered = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            for (int batch = 0; batch < batches; batch++) {
+                assertEquals(OwnerId.of("UserY" + batch), recovered.findById(SlotId.of("SlotA" + batch)).orElseThrow().getOwner());
+            }
+        }
+    }
+
+
+    @Test
+    @DisplayName("partia z nieaktualną wersją nie trafia ani do dziennika, ani do delegata")
+    void staleBatchIsNotJournaled() {
+        // given
+        try (JournaledSlotRepository repository = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            repository.save(Slot.create(slotA, alice));
+            Slot stale = repository.findById(slotA).orElseThrow();
+            Slot fresh = repository.findById(slotA).orElseThrow();
+            fresh.assignTo(bob);
+            repository.saveAll(List.of(fresh));
+
+            // when
+            stale.release();
+            assertThrows(StaleSlotException.class, () -> repository.saveAll(List.of(stale)));
+        }
+
+        // then
+        try (JournaledSlotRepository recovered = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            assertEquals(bob, recovered.findById(slotA).orElseThrow().getOwner());
+            assertEquals(1, recovered.findById(slotA).orElseThrow().version());
+        }
+    }
+
+    @Test
+    @DisplayName("migawka większa niż jedna ramka jest scalana z dziennikiem przy kolejnych checkpointach")
+    void snapshotSpanningManyFramesIsMergedWithJournal() {
+        // given
+        int slots = SlotJournal.SNAPSHOT_FRAME_SLOTS * 2 + 7;
+        try (JournaledSlotRepository repository = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            for (int i = 0; i < slots; i++) {
+                repository.save(Slot.create(SlotId.of("Slot" + i), alice));
+            }
+            repository.checkpoint();
+
+            // when
+            for (int i = 0; i < slots; i += 3) {
+                Slot slot = repository.findById(SlotId.of("Slot" + i)).orElseThrow();
+                slot.assignTo(bob);
+                repository.saveAll(List.of(slot));
+            }
+            repository.save(Slot.create(SlotId.of("Slot" + slots), bob));
+            repository.checkpoint();
+        }
+
+        // then
+        try (JournaledSlotRepository recovered = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            for (int i = 0; i <= slots; i++) {
+                OwnerId expected = i % 3 == 0 || i == slots ? bob : alice;
+                assertEquals(expected, recovered.findById(SlotId.of("Slot" + i)).orElseThrow().getOwner());
+            }
+        }
+    }
+
+
+    @Test
+    @DisplayName("ponowny zapis slotu bez zmiany wersji wygrywa po restarcie, także po migawce")
+    void resavedSlotWithSameVersionWinsAfterRestart() {
+        // given
+        try (JournaledSlotRepository repository = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            repository.save(Slot.create(slotA, alice));
+            repository.save(Slot.create(slotB, alice));
+            repository.checkpoint();
+
+            // when
+            repository.save(Slot.create(slotA, bob));
+            repository.save(Slot.create(slotB, bob));
+            repository.save(Slot.create(slotB, alice));
+        }
+
+        // then
+        try (JournaledSlotRepository recovered = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            assertEquals(bob, recovered.findById(slotA).orElseThrow().getOwner());
+            assertEquals(alice, recovered.findById(slotB).orElseThrow().getOwner());
+        }
+    }
+
+    @Test
+    @DisplayName("checkpoint najpierw kończy kompaktowanie pozostawionego dziennika, zamiast go nadpisać")
+    void checkpointFinishesLeftoverRetiredJournalInsteadOfOverwritingIt() throws IOException {
+        // given
+        Path other = Files.createDirectory(directory.resolve("other"));
+        try (JournaledSlotRepository repository = JournaledSlotRepository.open(new InMemorySlotRepository(), other)) {
+            repository.save(Slot.create(slotB, bob));
+        }
+        try (JournaledSlotRepository repository = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            repository.save(Slot.create(slotA, alice));
+            // dziennik odłożony przez checkpoint, który padł przed scaleniem
+            Files.copy(other.resolve("slots.journal"), directory.resolve("slots.journal.retired"));
+
+            // when
+            repository.checkpoint();
+        }
+
+        // then
+        assertFalse(Files.exists(directory.resolve("slots.journal.retired")));
+        try (JournaledSlotRepository recovered = JournaledSlotRepository.open(new InMemorySlotRepository(), directory)) {
+            assertEquals(alice, recovered.findById(slotA).orElseThrow().getOwner());
+            assertEquals(bob, recovered.findById(slotB).orElseThrow().getOwner());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.SUCCESS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedSlotRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("sloty przetrwają ponowne otwarcie pliku")
+    void slotsSurviveReopening() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+        try (MappedSlotRepository repository = MappedSlotRepository.open(directory, 1_000, 1_000)) {
+            repository.save(Slot.create(slotA, alice));
+            repository.save(Slot.create(slotB, bob));
+
+            // when
+            BatchReservationResult result = new BatchReservationUseCase(repository).execute(List.of(
+                    new ReservationChangeRequest(slotA, slotB, alice),
+                    new ReservationChangeRequest(slotB, slotA, bob)));
+            assertEquals(SUCCESS, result.status());
+        }
+
+        // then
+        try (MappedSlotRepository reopened = MappedSlotRepository.open(directory, 1_000, 1_000)) {
+            Map<SlotId, Slot> slots = reopened.findAll(Set.of(slotA, slotB, SlotId.of("Unknown")));
+            assertEquals(2, slots.size());
+            assertEquals(bob, slots.get(slotA).getOwner());
+            assertEquals(alice, slots.get(slotB).getOwner());
+            assertEquals(1, slots.get(slotA).version());
+            assertEquals(2, reopened.slotCount());
+        }
+    }
+
+    @Test
+    @DisplayName("zapis z nieaktualną wersją jest odrzucany")
+    void staleWriteIsRejected() {
+        try (MappedSlotRepository repository = MappedSlotRepository.open(directory, 1_000, 1_000)) {
+            // given
+            SlotId slotA = SlotId.of("SlotA");
+            repository.save(Slot.create(slotA, OwnerId.of("Alice")));
+            Slot first = repository.findById(slotA).orElseThrow();
+            Slot second = repository.findById(slotA).orElseThrow();
+            first.assignTo(OwnerId.of("Bob"));
+            repository.saveAll(List.of(first));
+
+            // when
+            second.assignTo(OwnerId.of("Charlie"));
+
+            // then
+            assertThrows(StaleSlotException.class, () -> repository.saveAll(List.of(second)));
+            assertEquals(OwnerId.of("Bob"), repository.findById(slotA).orElseThrow().getOwner());
+        }
+    }
+
+    @Test
+    @DisplayName("wolny slot jest zapisywany jako pusty właściciel")
+    void freeSlotIsStoredAsEmptyOwner() {
+        try (MappedSlotRepository repository = MappedSlotRepository.open(directory, 1_000, 1_000)) {
+            // given
+            SlotId slotA = SlotId.of("SlotA");
+
+            // when
+            repository.save(Slot.create(slotA, OwnerId.empty()));
+
+            // then
+            assertTrue(repository.findById(slotA).orElseThrow().getOwner().isEmpty());
+            assertTrue(repository.findById(SlotId.of("SlotB")).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingRequestPoolTest {
+
+    SlotId slotA = SlotId.of("SlotA");
+    SlotId slotB = SlotId.of("SlotB");
+    SlotId slotC = SlotId.of("SlotC");
+    OwnerId alice = OwnerId.of("Alice");
+    OwnerId bob = OwnerId.of("Bob");
+
+    MovableClock clock = new MovableClock();
+
+    @Test
+    @DisplayName("żądania są indeksowane po slotach i właścicielu")
+    void requestsAreIndexedBySlotsAndOwner() {
+        // given
+        PendingRequestPool pool = new PendingRequestPool(clock, Duration.ofMinutes(5), 10);
+        ReservationChangeRequest aliceRequest = new ReservationChangeRequest(slotA, slotB, alice);
+        ReservationChangeRequest bobRequest = new ReservationChangeRequest(slotB, slotC, bob);
+
+        // when
+        pool.add(aliceRequest);
+        pool.add(bobRequest);
+
+        // then
+        assertEquals(Set.of(aliceRequest), pool.fromSlot(slotA));
+        assertEquals(Set.of(bobRequest), pool.fromSlot(slotB));
+        assertEquals(Set.of(aliceRequest), pool.toSlot(slotB));
+        assertEquals(Set.of(), pool.toSlot(slotA));
+        assertEquals(Set.of(bobRequest), pool.ofOwner(bob));
+
+        // and
+        assertTrue(pool.remove(aliceRequest));
+        assertEquals(Set.of(), pool.ofOwner(alice));
+        assertEquals(Set.of(), pool.toSlot(slotB));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    @DisplayName("żądania wygasają po czasie życia")
+    void requestsExpireAfterTimeToLive() {
+        // given
+        PendingRequestPool pool = new PendingRequestPool(clock, Duration.ofMinutes(5), 10);
+        ReservationChangeRequest older = new ReservationChangeRequest(slotA, slotB, alice);
+        ReservationChangeRequest newer = new ReservationChangeRequest(slotB, slotC, bob);
+        pool.add(older);
+        clock.advance(Duration.ofMinutes(3));
+        pool.add(newer);
+
+        // when
+        clock.advance(Duration.ofMinutes(2));
+        List<ReservationChangeRequest> expired = pool.expire();
+
+        // then
+        assertEquals(List.of(older), expired);
+        assertFalse(pool.contains(older));
+        assertTrue(pool.contains(newer));
+        assertEquals(Set.of(), pool.fromSlot(slotA));
+    }
+
+    @Test
+    @DisplayName("pełna pula wypycha najstarsze żądanie")
+    void fullPoolEvictsOldestRequest() {
+        // given
+        PendingRequestPool pool = new PendingRequestPool(clock, Duration.ofMinutes(5), 2);
+        ReservationChangeRequest first = new ReservationChangeRequest(slotA, slotB, alice);
+        ReservationChangeRequest second = new ReservationChangeRequest(slotB, slotC, bob);
+        pool.add(first);
+        pool.add(second);
+
+        // when
+        List<ReservationChangeRequest> evicted = pool.add(new ReservationChangeRequest(slotC, slotA, bob));
+
+        // then
+        assertEquals(List.of(first), evicted);
+        assertEquals(2, pool.size());
+        assertEquals(Set.of(), pool.ofOwner(alice));
+    }
+
+    static class MovableClock extends Clock {
+
+        private Instant now = Instant.parse("2024-01-01T10:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
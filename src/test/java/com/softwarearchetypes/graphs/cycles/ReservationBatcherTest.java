@@ -0,0 +1,115 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.FAILURE;
+import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.SUCCESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReservationBatcherTest {
+
+    SlotRepository slotRepository = new InMemorySlotRepository();
+    BatchReservationUseCase useCase = new BatchReservationUseCase(slotRepository);
+    List<List<ReservationChangeRequest>> executedBatches = new ArrayList<>();
+
+    SlotId slotA = SlotId.of("SlotA");
+    SlotId slotB = SlotId.of("SlotB");
+    SlotId slotC = SlotId.of("SlotC");
+    OwnerId alice = OwnerId.of("Alice");
+    OwnerId bob = OwnerId.of("Bob");
+    OwnerId charlie = OwnerId.of("Charlie");
+
+    @Test
+    @DisplayName("pełne okno wykonuje się od razu jednym batchem")
+    void fullWindowIsExecutedImmediatelyAsOneBatch() throws Exception {
+        // given
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        thereIsSlotOwnedBy(slotC, charlie);
+
+        try (ReservationBatcher batcher = new ReservationBatcher(this::countedBatch, Duration.ofHours(1), 3)) {
+            // when
+            CompletableFuture<BatchReservationResult> first = batcher.submit(new ReservationChangeRequest(slotA, slotB, alice));
+            CompletableFuture<BatchReservationResult> second = batcher.submit(new ReservationChangeRequest(slotB, slotC, bob));
+            CompletableFuture<BatchReservationResult> third = batcher.submit(new ReservationChangeRequest(slotC, slotA, charlie));
+
+            // then
+            assertEquals(SUCCESS, first.get(5, TimeUnit.SECONDS).status());
+            assertEquals(SUCCESS, second.get(5, TimeUnit.SECONDS).status());
+            assertEquals(3, third.get(5, TimeUnit.SECONDS).executedRequests().size());
+            assertEquals(1, executedBatches.size());
+        }
+
+        // and
+        assertEquals(charlie, findSlotOwner(slotA));
+        assertEquals(alice, findSlotOwner(slotB));
+        assertEquals(bob, findSlotOwner(slotC));
+    }
+
+    @Test
+    @DisplayName("po upływie okna każde żądanie dostaje swój wynik")
+    void afterWindowElapsesEachRequestGetsItsOwnOutcome() throws Exception {
+        // given
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        thereIsSlotOwnedBy(slotC, charlie);
+
+        try (ReservationBatcher batcher = new ReservationBatcher(this::countedBatch, Duration.ofMillis(20), 100)) {
+            // when
+            CompletableFuture<BatchReservationResult> aliceOutcome = batcher.submit(new ReservationChangeRequest(slotA, slotB, alice));
+            CompletableFuture<BatchReservationResult> bobOutcome = batcher.submit(new ReservationChangeRequest(slotB, slotA, bob));
+            CompletableFuture<BatchReservationResult> charlieOutcome = batcher.submit(new ReservationChangeRequest(slotC, slotA, charlie));
+
+            // then
+            assertEquals(2, aliceOutcome.get(5, TimeUnit.SECONDS).executedRequests().size());
+            assertEquals(SUCCESS, bobOutcome.get(5, TimeUnit.SECONDS).status());
+            assertEquals(FAILURE, charlieOutcome.get(5, TimeUnit.SECONDS).status());
+            assertEquals(1, executedBatches.size());
+            assertEquals(3, executedBatches.get(0).size());
+        }
+    }
+
+    @Test
+    @DisplayName("błąd w batchu kończy future każdego żądania z okna")
+    void errorInBatchFailsEveryRequestInWindow() {
+        // given
+        StackOverflowError error = new StackOverflowError();
+
+        try (ReservationBatcher batcher = new ReservationBatcher(requests -> {
+            throw error;
+        }, Duration.ofHours(1), 2)) {
+            // when
+            CompletableFuture<BatchReservationResult> first = batcher.submit(new ReservationChangeRequest(slotA, slotB, alice));
+            CompletableFuture<BatchReservationResult> second = batcher.submit(new ReservationChangeRequest(slotB, slotA, bob));
+
+            // then
+            assertSame(error, assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause());
+            assertSame(error, assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS)).getCause());
+        }
+    }
+
+    BatchReservationResult countedBatch(List<ReservationChangeRequest> requests) {
+        executedBatches.add(requests);
+        return useCase.executeAll(requests);
+    }
+
+    Slot thereIsSlotOwnedBy(SlotId slotId, OwnerId owner) {
+        Slot slot = Slot.create(slotId, owner);
+        slotRepository.save(slot);
+        return slot;
+    }
+
+    OwnerId findSlotOwner(SlotId slotId) {
+        return slotRepository.findById(slotId).orElseThrow().getOwner();
+    }
+}
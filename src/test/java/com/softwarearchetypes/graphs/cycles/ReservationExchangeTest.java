@@ -0,0 +1,385 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.FAILURE;
+import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.SUCCESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReservationExchangeTest {
+
+    SlotRepository slotRepository = new InMemorySlotRepository();
+    ReservationExchange exchange = new ReservationExchange(slotRepository);
+
+    @Test
+    @DisplayName("żądanie czeka dopóki nie domknie się cykl")
+    void requestWaitsUntilCycleCloses() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+        OwnerId charlie = OwnerId.of("Charlie");
+
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        thereIsSlotOwnedBy(slotC, charlie);
+
+        // when
+        BatchReservationResult first = exchange.submit(new ReservationChangeRequest(slotA, slotB, alice));
+        BatchReservationResult second = exchange.submit(new ReservationChangeRequest(slotB, slotC, bob));
+        BatchReservationResult third = exchange.submit(new ReservationChangeRequest(slotC, slotA, charlie));
+
+        // then
+        assertEquals(FAILURE, first.status());
+        assertEquals(FAILURE, second.status());
+        assertEquals(SUCCESS, third.status());
+        assertEquals(3, third.executedRequests().size());
+        assertEquals(0, exchange.pendingCount());
+
+        // and
+        assertEquals(charlie, findSlotOwner(slotA));
+        assertEquals(alice, findSlotOwner(slotB));
+        assertEquals(bob, findSlotOwner(slotC));
+    }
+
+    @Test
+    @DisplayName("wycofane żądanie nie bierze udziału w zamianie")
+    void withdrawnRequestDoesNotTakePartInSwap() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        ReservationChangeRequest aliceRequest = new ReservationChangeRequest(slotA, slotB, alice);
+        exchange.submit(aliceRequest);
+
+        // when
+        assertTrue(exchange.withdraw(aliceRequest));
+        BatchReservationResult result = exchange.submit(new ReservationChangeRequest(slotB, slotA, bob));
+
+        // then
+        assertEquals(FAILURE, result.status());
+        assertEquals(1, exchange.pendingCount());
+        assertEquals(alice, findSlotOwner(slotA));
+    }
+
+    @Test
+    @DisplayName("wygasłe żądanie nie bierze udziału w zamianie")
+    void expiredRequestDoesNotTakePartInSwap() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        PendingRequestPoolTest.MovableClock clock = new PendingRequestPoolTest.MovableClock();
+        ReservationExchange expiringExchange = new ReservationExchange(slotRepository,
+                new PendingRequestPool(clock, Duration.ofMinutes(5), 100));
+        expiringExchange.submit(new ReservationChangeRequest(slotA, slotB, alice));
+
+        // when
+        clock.advance(Duration.ofMinutes(10));
+        BatchReservationResult result = expiringExchange.submit(new ReservationChangeRequest(slotB, slotA, bob));
+
+        // then
+        assertEquals(FAILURE, result.status());
+        assertEquals(1, expiringExchange.pendingCount());
+        assertEquals(alice, findSlotOwner(slotA));
+    }
+
+    @Test
+    @DisplayName("wycofanie wszystkich żądań właściciela opróżnia jego część puli")
+    void withdrawingAllOwnerRequestsEmptiesTheirPartOfPool() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        thereIsSlotOwnedBy(slotC, bob);
+        exchange.submit(new ReservationChangeRequest(slotA, slotB, alice));
+        exchange.submit(new ReservationChangeRequest(slotA, slotC, alice));
+
+        // when
+        int withdrawn = exchange.withdrawAll(alice);
+        BatchReservationResult result = exchange.submit(new ReservationChangeRequest(slotB, slotA, bob));
+
+        // then
+        assertEquals(2, withdrawn);
+        assertEquals(FAILURE, result.status());
+        assertEquals(1, exchange.pendingCount());
+    }
+
+    @Test
+    @DisplayName("nadanie uprawnienia wykonuje zaparkowany cykl")
+    void grantingEligibilityExecutesParkedCycle() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        Eligibility eligibility = new Eligibility();
+        eligibility.markTransferEligible(alice, bob);
+        ReservationExchange guardedExchange = new ReservationExchange(slotRepository, eligibility);
+        guardedExchange.submit(new ReservationChangeRequest(slotA, slotB, alice));
+        BatchReservationResult parked = guardedExchange.submit(new ReservationChangeRequest(slotB, slotA, bob));
+
+        // when
+        eligibility.markTransferEligible(bob, alice);
+
+        // then
+        assertEquals(FAILURE, parked.status());
+        assertEquals(0, guardedExchange.pendingCount());
+        assertEquals(bob, findSlotOwner(slotA));
+        assertEquals(alice, findSlotOwner(slotB));
+    }
+
+    @Test
+    @DisplayName("odebranie uprawnienia parkuje czekające żądanie")
+    void revokingEligibilityParksPendingRequest() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        Eligibility eligibility = new Eligibility();
+        eligibility.markTransferEligible(alice, bob);
+        eligibility.markTransferEligible(bob, alice);
+        ReservationExchange guardedExchange = new ReservationExchange(slotRepository, eligibility);
+        guardedExchange.submit(new ReservationChangeRequest(slotA, slotB, alice));
+
+        // when
+        eligibility.markTransferIneligible(alice, bob);
+        BatchReservationResult result = guardedExchange.submit(new ReservationChangeRequest(slotB, slotA, bob));
+
+        // then
+        assertEquals(FAILURE, result.status());
+        assertEquals(2, guardedExchange.pendingCount());
+        assertEquals(alice, findSlotOwner(slotA));
+
+        // and
+        eligibility.markTransferEligible(alice, bob);
+        assertEquals(bob, findSlotOwner(slotA));
+    }
+
+    @Test
+    @DisplayName("po zamianie czekające żądanie jest sprawdzane dla nowego właściciela slotu")
+    void pendingRequestIsRecheckedForNewSlotOwnerAfterSwap() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+        OwnerId charlie = OwnerId.of("Charlie");
+
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        thereIsSlotOwnedBy(slotC, charlie);
+        Eligibility eligibility = new Eligibility();
+        eligibility.markTransferEligible(alice, bob);
+        eligibility.markTransferEligible(bob, alice);
+        eligibility.markTransferEligible(bob, charlie);
+        eligibility.markTransferEligible(charlie, bob);
+        ReservationExchange guardedExchange = new ReservationExchange(slotRepository, eligibility);
+        // Charlie chce SlotA, ale nie może przekazać slotu Alice
+        BatchReservationResult parked = guardedExchange.submit(new ReservationChangeRequest(slotC, slotA, charlie));
+
+        // when
+        guardedExchange.submit(new ReservationChangeRequest(slotA, slotB, alice));
+        guardedExchange.submit(new ReservationChangeRequest(slotB, slotA, bob));
+        // SlotA należy teraz do Boba, a Charlie i Bob mogą się wymieniać
+        BatchReservationResult result = guardedExchange.submit(new ReservationChangeRequest(slotA, slotC, bob));
+
+        // then
+        assertEquals(FAILURE, parked.status());
+        assertEquals(SUCCESS, result.status());
+        assertEquals(charlie, findSlotOwner(slotA));
+        assertEquals(alice, findSlotOwner(slotB));
+        assertEquals(bob, findSlotOwner(slotC));
+        assertEquals(0, guardedExchange.pendingCount());
+    }
+
+    @Test
+    @DisplayName("zamiana wywołana przez przeliczenie właścicieli nie zostawia żądań pod nieaktualną parą właścicieli")
+    void swapTriggeredByOwnerRecheckLeavesNoStaleOwnerPairs() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+        OwnerId charlie = OwnerId.of("Charlie");
+
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        thereIsSlotOwnedBy(slotC, charlie);
+        Eligibility eligibility = new Eligibility();
+        eligibility.markTransferEligible(alice, bob);
+        eligibility.markTransferEligible(bob, alice);
+        eligibility.markTransferEligible(alice, charlie);
+        eligibility.markTransferEligible(bob, charlie);
+        eligibility.markTransferEligible(charlie, alice);
+        ReservationExchange guardedExchange = new ReservationExchange(slotRepository, eligibility);
+        // Alice odda SlotB Charliemu, kiedy już go dostanie
+        guardedExchange.submit(new ReservationChangeRequest(slotB, slotC, alice));
+        // Charlie nie może przekazać slotu Bobowi, więc czeka zaparkowany
+        guardedExchange.submit(new ReservationChangeRequest(slotC, slotB, charlie));
+        guardedExchange.submit(new ReservationChangeRequest(slotA, slotC, bob));
+
+        // when
+        guardedExchange.submit(new ReservationChangeRequest(slotA, slotB, alice));
+        guardedExchange.submit(new ReservationChangeRequest(slotB, slotA, bob));
+        // po obu zamianach żądanie Boba oznacza przekazanie od Boba do Alice
+        eligibility.markTransferIneligible(bob, alice);
+        BatchReservationResult result = guardedExchange.submit(new ReservationChangeRequest(slotC, slotA, alice));
+
+        // then
+        assertEquals(charlie, findSlotOwner(slotB));
+        assertEquals(alice, findSlotOwner(slotC));
+        assertEquals(FAILURE, result.status());
+        assertEquals(bob, findSlotOwner(slotA));
+        assertEquals(2, guardedExchange.pendingCount());
+    }
+
+    @Test
+    @DisplayName("żądanie na nieistniejący slot jest odrzucane, także gdy wskazuje ten sam slot")
+    void requestForMissingSlotIsRejected() {
+        // given
+        SlotId missing = SlotId.of("Missing");
+        Eligibility eligibility = new Eligibility();
+        ReservationExchange guardedExchange = new ReservationExchange(slotRepository, eligibility);
+
+        // when
+        BatchReservationResult result = guardedExchange.submit(new ReservationChangeRequest(missing, missing, OwnerId.of("Alice")));
+
+        // then
+        assertEquals(FAILURE, result.status());
+        assertEquals(0, guardedExchange.pendingCount());
+    }
+
+    @Test
+    @DisplayName("cykl odrzucony przez commit gubi tylko żądanie właściciela, który stracił slot")
+    void cycleRejectedByCommitDropsOnlyRequestOfOwnerWhoLostSlot() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+        OwnerId dave = OwnerId.of("Dave");
+
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        // inny batch przejmuje SlotA dla Dave'a tuż przed zapisem zamiany
+        ReservationExchange racedExchange = new ReservationExchange(
+                new InMemorySlotRepositoryTest.ConcurrentWriterBeforeFirstSave(slotRepository, slotA, dave));
+        racedExchange.submit(new ReservationChangeRequest(slotA, slotB, alice));
+
+        // when
+        BatchReservationResult rejected = racedExchange.submit(new ReservationChangeRequest(slotB, slotA, bob));
+
+        // then
+        assertEquals(FAILURE, rejected.status());
+        assertEquals(1, racedExchange.pendingCount());
+
+        // and
+        BatchReservationResult result = racedExchange.submit(new ReservationChangeRequest(slotA, slotB, dave));
+        assertEquals(SUCCESS, result.status());
+        assertEquals(bob, findSlotOwner(slotA));
+        assertEquals(dave, findSlotOwner(slotB));
+        assertEquals(0, racedExchange.pendingCount());
+    }
+
+    @Test
+    @DisplayName("cykl, który przegrał wszystkie próby commitu, czeka w puli i wykonuje się przy kolejnym zgłoszeniu")
+    void cycleThatLostAllCommitAttemptsIsRetriedOnNextSubmit() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        SlotId slotD = SlotId.of("SlotD");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+        OwnerId charlie = OwnerId.of("Charlie");
+
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        thereIsSlotOwnedBy(slotC, charlie);
+        thereIsSlotOwnedBy(slotD, charlie);
+        ReservationExchange racedExchange = new ReservationExchange(
+                new InMemorySlotRepositoryTest.ConcurrentWriterBeforeFirstSave(slotRepository, slotA), RetryPolicy.attempts(1));
+        racedExchange.submit(new ReservationChangeRequest(slotA, slotB, alice));
+
+        // when
+        BatchReservationResult lost = racedExchange.submit(new ReservationChangeRequest(slotB, slotA, bob));
+
+        // then
+        assertEquals(FAILURE, lost.status());
+        assertEquals(2, racedExchange.pendingCount());
+        assertEquals(alice, findSlotOwner(slotA));
+
+        // and
+        BatchReservationResult retried = racedExchange.submit(new ReservationChangeRequest(slotC, slotD, charlie));
+        assertEquals(SUCCESS, retried.status());
+        assertEquals(bob, findSlotOwner(slotA));
+        assertEquals(alice, findSlotOwner(slotB));
+        assertEquals(1, racedExchange.pendingCount());
+    }
+
+    @Test
+    @DisplayName("nieudany commit zamiany odblokowanej przez nadanie uprawnienia nie przerywa powiadomienia")
+    void failedCommitOfSwapUnlockedByEligibilityDoesNotEscapeNotification() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        OwnerId alice = OwnerId.of("Alice");
+        OwnerId bob = OwnerId.of("Bob");
+
+        thereIsSlotOwnedBy(slotA, alice);
+        thereIsSlotOwnedBy(slotB, bob);
+        Eligibility eligibility = new Eligibility();
+        eligibility.markTransferEligible(alice, bob);
+        ReservationExchange racedExchange = new ReservationExchange(
+                new InMemorySlotRepositoryTest.ConcurrentWriterBeforeFirstSave(slotRepository, slotA, OwnerId.of("Dave")), eligibility);
+        racedExchange.submit(new ReservationChangeRequest(slotA, slotB, alice));
+        racedExchange.submit(new ReservationChangeRequest(slotB, slotA, bob));
+
+        // when
+        eligibility.markTransferEligible(bob, alice);
+
+        // then
+        assertTrue(eligibility.isTransferEligible(bob, alice));
+        assertEquals(1, racedExchange.pendingCount());
+        assertEquals(bob, findSlotOwner(slotB));
+    }
+
+    Slot thereIsSlotOwnedBy(SlotId slotId, OwnerId owner) {
+        Slot slot = Slot.create(slotId, owner);
+        slotRepository.save(slot);
+        return slot;
+    }
+
+    OwnerId findSlotOwner(SlotId slotId) {
+        return slotRepository.findById(slotId).orElseThrow().getOwner();
+    }
+}
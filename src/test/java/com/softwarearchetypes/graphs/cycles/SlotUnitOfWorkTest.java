@@ -0,0 +1,107 @@
+package com.softwarearchetypes.graphs.cycles;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.softwarearchetypes.graphs.cycles.BatchReservationResult.Status.SUCCESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlotUnitOfWorkTest {
+
+    RecordingSlotRepository slotRepository = new RecordingSlotRepository();
+
+    @Test
+    @DisplayName("każdy slot jest ładowany raz w ramach jednostki pracy")
+    void eachSlotIsLoadedOncePerUnitOfWork() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        slotRepository.save(Slot.create(slotA, OwnerId.of("Alice")));
+        slotRepository.save(Slot.create(slotB, OwnerId.of("Bob")));
+        SlotUnitOfWork unitOfWork = new SlotUnitOfWork(slotRepository);
+
+        // when
+        unitOfWork.load(Set.of(slotA, slotB));
+        unitOfWork.load(Set.of(slotA, slotB, slotC));
+        unitOfWork.load(Set.of(slotC));
+
+        // then
+        assertEquals(List.of(Set.of(slotA, slotB), Set.of(slotC)), slotRepository.loadedIds);
+    }
+
+    @Test
+    @DisplayName("zapisywane są tylko zmienione sloty")
+    void onlyChangedSlotsAreSaved() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        slotRepository.save(Slot.create(slotA, OwnerId.of("Alice")));
+        slotRepository.save(Slot.create(slotB, OwnerId.of("Bob")));
+        SlotUnitOfWork unitOfWork = new SlotUnitOfWork(slotRepository);
+        Map<SlotId, Slot> slots = unitOfWork.load(Set.of(slotA, slotB));
+
+        // when
+        slots.get(slotA).assignTo(OwnerId.of("Charlie"));
+        slots.get(slotB).assignTo(OwnerId.of("Bob"));
+        unitOfWork.commit();
+
+        // then
+        assertEquals(List.of(Set.of(slotA)), slotRepository.savedIds);
+    }
+
+    @Test
+    @DisplayName("batch z uprawnieniami czyta sloty jednym zapytaniem i zapisuje tylko zmienione")
+    void eligibilityBatchReadsSlotsOnceAndWritesOnlyChanged() {
+        // given
+        SlotId slotA = SlotId.of("SlotA");
+        SlotId slotB = SlotId.of("SlotB");
+        SlotId slotC = SlotId.of("SlotC");
+        SlotId slotD = SlotId.of("SlotD");
+        OwnerId userX = OwnerId.of("UserX");
+        OwnerId userY = OwnerId.of("UserY");
+        OwnerId userZ = OwnerId.of("UserZ");
+        slotRepository.save(Slot.create(slotA, userX));
+        slotRepository.save(Slot.create(slotB, userY));
+        slotRepository.save(Slot.create(slotC, userZ));
+        slotRepository.save(Slot.create(slotD, userX));
+
+        Eligibility eligibility = new Eligibility();
+        eligibility.markTransferEligible(userX, userY);
+        eligibility.markTransferEligible(userY, userX);
+
+        // when
+        BatchReservationResult result = new BatchReservationUseCase(slotRepository).execute(List.of(
+                new ReservationChangeRequest(slotA, slotB, userX),
+                new ReservationChangeRequest(slotB, slotA, userY),
+                new ReservationChangeRequest(slotC, slotD, userZ)
+        ), eligibility);
+
+        // then
+        assertEquals(SUCCESS, result.status());
+        // właściciel SlotC nie ma uprawnień do nikogo, więc jego SlotD nie jest nawet czytany
+        assertEquals(List.of(Set.of(slotA, slotB, slotC)), slotRepository.loadedIds);
+        assertEquals(List.of(Set.of(slotA, slotB)), slotRepository.savedIds);
+    }
+
+    static class RecordingSlotRepository extends InMemorySlotRepository {
+        final List<Set<SlotId>> loadedIds = new ArrayList<>();
+        final List<Set<SlotId>> savedIds = new ArrayList<>();
+
+        @Override
+        public Map<SlotId, Slot> findAll(Set<SlotId> allSlotIds) {
+            loadedIds.add(Set.copyOf(allSlotIds));
+            return super.findAll(allSlotIds);
+        }
+
+        @Override
+        public void saveAll(Collection<Slot> slots) {
+            Set<SlotId> ids = new HashSet<>();
+            slots.forEach(slot -> ids.add(slot.id()));
+            savedIds.add(ids);
+            super.saveAll(slots);
+        }
+    }
+}
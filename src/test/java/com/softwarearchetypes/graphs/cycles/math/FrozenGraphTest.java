@@ -0,0 +1,285 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrozenGraphTest {
+
+    @Test
+    @DisplayName("zamrożony graf zachowuje krawędzie i ich właściwości")
+    void frozenGraphKeepsEdgesAndTheirProperties() {
+        // given
+        FrozenGraph<String, String> graph = FrozenGraph.<String, String>builder()
+                .addEdge("A", "B", "edge1")
+                .addEdge("B", "C", "edge2")
+                .addEdge("C", "A", "edge3")
+                .build();
+
+        // when
+        Optional<Path<String, String>> cycle = graph.findFirstCycle();
+
+        // then
+        assertEquals(3, graph.nodeCount());
+        assertEquals(3, graph.edgeCount());
+        assertTrue(graph.hasEdge(new Node<>("A"), new Node<>("B")));
+        assertFalse(graph.hasEdge(new Node<>("B"), new Node<>("A")));
+        assertFalse(graph.hasEdge(new Node<>("A"), new Node<>("X")));
+        assertTrue(cycle.isPresent());
+        assertEquals(List.of("edge1", "edge2", "edge3"), cycle.get().edges().stream().map(Edge::property).toList());
+    }
+
+    @Test
+    @DisplayName("zamrożenie grafu daje ten sam wynik co graf mutowalny")
+    void freezingGraphGivesSameAnswers() {
+        // given
+        Graph<String, String> graph = new Graph<>();
+        graph.addEdge(new Edge<>(new Node<>("A"), new Node<>("B"), "edge1"));
+        graph.addEdge(new Edge<>(new Node<>("B"), new Node<>("C"), "edge2"));
+
+        // when
+        FrozenGraph<String, String> frozen = graph.freeze();
+
+        // then
+        assertTrue(frozen.hasEdge(new Node<>("A"), new Node<>("B")));
+        assertTrue(frozen.hasEdge(new Node<>("B"), new Node<>("C")));
+        assertFalse(frozen.findFirstCycle().isPresent());
+    }
+
+    @Test
+    @DisplayName("przecięcie zamrożonych grafów zawiera tylko wspólne krawędzie")
+    void intersectionOfFrozenGraphsContainsOnlyCommonEdges() {
+        // given
+        FrozenGraph<String, String> graph1 = FrozenGraph.<String, String>builder()
+                .addEdge("A", "B", "edge1")
+                .addEdge("B", "C", "edge2")
+                .addEdge("C", "A", "edge3")
+                .build();
+
+        FrozenGraph<String, Void> graph2 = FrozenGraph.<String, Void>builder()
+                .addEdge("B", "C", null)
+                .addEdge("A", "B", null)
+                .addEdge("X", "A", null)
+                .build();
+
+        // when
+        FrozenGraph<String, String> intersection = graph1.intersection(graph2);
+
+        // then
+        assertEquals(2, intersection.edgeCount());
+        assertTrue(intersection.hasEdge(new Node<>("A"), new Node<>("B")));
+        assertTrue(intersection.hasEdge(new Node<>("B"), new Node<>("C")));
+        assertFalse(intersection.hasEdge(new Node<>("C"), new Node<>("A")));
+        assertFalse(intersection.findFirstCycle().isPresent());
+    }
+
+    @Test
+    @DisplayName("pętla własna jest cyklem")
+    void selfLoopIsCycle() {
+        // given
+        FrozenGraph<String, String> graph = FrozenGraph.<String, String>builder()
+                .addEdge("A", "A", "loop")
+                .build();
+
+        // when
+        Optional<Path<String, String>> cycle = graph.findFirstCycle();
+
+        // then
+        assertTrue(cycle.isPresent());
+        assertEquals(1, cycle.get().edges().size());
+    }
+
+    @Test
+    @DisplayName("znajduje maksymalny zbiór rozłącznych cykli")
+    void findsMaximalSetOfDisjointCycles() {
+        // given
+        FrozenGraph<String, String> graph = FrozenGraph.<String, String>builder()
+                .addEdge("A", "B", "edge1")
+                .addEdge("B", "A", "edge2")
+                .addEdge("B", "C", "edge3")
+                .addEdge("C", "D", "edge4")
+                .addEdge("D", "C", "edge5")
+                .addEdge("E", "E", "edge6")
+                .addEdge("F", "A", "edge7")
+                .build();
+
+        // when
+        List<Path<String, String>> cycles = graph.findDisjointCycles();
+
+        // then
+        assertEquals(3, cycles.size());
+        assertEquals(Set.of("A", "B", "C", "D", "E"), cycles.stream()
+                .flatMap(cycle -> cycle.edges().stream())
+                .map(edge -> edge.from().property())
+                .collect(Collectors.toSet()));
+    }
+
+    @Test
+    @DisplayName("graf dzieli się na słabo spójne składowe")
+    void graphIsSplitIntoWeaklyConnectedComponents() {
+        // given
+        FrozenGraph<String, String> graph = FrozenGraph.<String, String>builder()
+                .addEdge("A", "B", "edge1")
+                .addEdge("C", "B", "edge2")
+                .addEdge("D", "E", "edge3")
+                .addEdge("E", "D", "edge4")
+                .addNode("F")
+                .build();
+
+        // when
+        List<FrozenGraph<String, String>> components = graph.weaklyConnectedComponents();
+
+        // then
+        assertEquals(3, components.size());
+        assertEquals(List.of(3, 2, 1), components.stream().map(FrozenGraph::nodeCount).toList());
+        assertTrue(components.get(0).hasEdge(new Node<>("C"), new Node<>("B")));
+        assertTrue(components.get(1).findFirstCycle().isPresent());
+    }
+
+    @Test
+    @DisplayName("równoległe przeszukiwanie składowych znajduje cykle we wszystkich wyspach")
+    void parallelSearchFindsCyclesInAllIslands() {
+        // given
+        int islands = 5_000;
+        FrozenGraph.Builder<String, String> builder = FrozenGraph.builder(islands * 2);
+        for (int island = 0; island < islands; island++) {
+            builder.addEdge("A" + island, "B" + island, "there" + island);
+            builder.addEdge("B" + island, "A" + island, "back" + island);
+        }
+        FrozenGraph<String, String> graph = builder.build();
+
+        // when
+        List<Path<String, String>> cycles = graph.findDisjointCycles(ForkJoinPool.commonPool());
+
+        // then
+        assertEquals(islands, cycles.size());
+    }
+
+    @Test
+    @DisplayName("ograniczone wyszukiwanie zwraca najkrótsze rozłączne cykle najpierw")
+    void boundedSearchReturnsShortestDisjointCyclesFirst() {
+        // given
+        FrozenGraph<String, String> graph = FrozenGraph.<String, String>builder()
+                .addEdge("A", "B", "edge1")
+                .addEdge("B", "C", "edge2")
+                .addEdge("C", "A", "edge3")
+                .addEdge("C", "D", "edge4")
+                .addEdge("D", "C", "edge5")
+                .addEdge("E", "F", "edge6")
+                .addEdge("F", "G", "edge7")
+                .addEdge("G", "H", "edge8")
+                .addEdge("H", "I", "edge9")
+                .addEdge("I", "E", "edge10")
+                .build();
+
+        // when
+        List<Path<String, String>> cycles = graph.findCycles(4);
+
+        // then
+        assertEquals(1, cycles.size());
+        assertEquals(List.of("edge4", "edge5"), cycles.get(0).edges().stream().map(Edge::property).toList());
+        assertEquals(2, graph.findCycles(5).size());
+        assertEquals(List.of(2, 5), graph.findCycles(5).stream().map(cycle -> cycle.edges().size()).toList());
+    }
+
+    @Test
+    @DisplayName("ograniczone wyszukiwanie szuka ponownie cyklu omijającego zajęte węzły")
+    void boundedSearchRetriesAroundTakenNodes() {
+        // given
+        FrozenGraph<String, String> graph = FrozenGraph.<String, String>builder()
+                .addEdge("A", "B", "edge1")
+                .addEdge("B", "A", "edge2")
+                .addEdge("B", "C", "edge3")
+                .addEdge("C", "D", "edge4")
+                .addEdge("D", "C", "edge5")
+                .addEdge("C", "E", "edge6")
+                .addEdge("E", "F", "edge7")
+                .addEdge("F", "C", "edge8")
+                .build();
+
+        // when
+        List<Path<String, String>> cycles = graph.findCycles(3);
+
+        // then
+        assertEquals(2, cycles.size());
+        assertEquals(Set.of("A", "B", "C", "D"), cycles.stream()
+                .flatMap(cycle -> cycle.edges().stream())
+                .map(edge -> edge.from().property())
+                .collect(Collectors.toSet()));
+    }
+
+    @Test
+    @DisplayName("wylicza wszystkie cykle elementarne")
+    void enumeratesAllElementaryCycles() {
+        // given
+        FrozenGraph<String, String> graph = completeGraph(4);
+
+        // when
+        List<Path<String, String>> cycles = graph.elementaryCycles().toList();
+
+        // then
+        // 6 cykli dwuelementowych, 8 trzyelementowych i 6 czteroelementowych
+        assertEquals(20, cycles.size());
+        assertEquals(20, cycles.stream()
+                .map(cycle -> cycle.edges().stream().map(Edge::property).collect(Collectors.toSet()))
+                .distinct()
+                .count());
+    }
+
+    @Test
+    @DisplayName("cykle elementarne są generowane leniwie")
+    void elementaryCyclesAreGeneratedLazily() {
+        // given
+        FrozenGraph<String, String> graph = completeGraph(30);
+
+        // when
+        List<Path<String, String>> cycles = graph.elementaryCycles().limit(5).toList();
+
+        // then
+        assertEquals(5, cycles.size());
+        assertTrue(cycles.stream().allMatch(cycle ->
+                cycle.edges().get(0).from().equals(cycle.edges().get(cycle.edges().size() - 1).to())));
+    }
+
+    @Test
+    @DisplayName("łańcuchy kończą się w wolnych węzłach i nie dzielą węzłów")
+    void chainsEndInFreeNodesAndShareNoNodes() {
+        // given
+        FrozenGraph<String, String> graph = FrozenGraph.<String, String>builder()
+                .addEdge("A", "B", "edge1")
+                .addEdge("B", "C", "edge2")
+                .addEdge("C", "Free1", "edge3")
+                .addEdge("D", "C", "edge4")
+                .addEdge("E", "Free2", "edge5")
+                .addEdge("X", "Y", "edge6")
+                .addEdge("Y", "Free2", "edge7")
+                .build();
+
+        // when
+        List<Path<String, String>> chains = graph.findDisjointChains(node -> node.startsWith("Free"), Set.of("X"));
+
+        // then
+        assertEquals(2, chains.size());
+        assertEquals(List.of("edge1", "edge2", "edge3"), chains.get(0).edges().stream().map(Edge::property).toList());
+        assertEquals(1, chains.get(1).edges().size());
+    }
+
+    private static FrozenGraph<String, String> completeGraph(int size) {
+        FrozenGraph.Builder<String, String> builder = FrozenGraph.builder();
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                if (from != to) {
+                    builder.addEdge("N" + from, "N" + to, from + "->" + to);
+                }
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphTest {
+
+    @Test
+    @DisplayName("usunięcie krawędzi usuwa także sąsiadujące duplikaty")
+    void removingEdgeRemovesAdjacentDuplicates() {
+        // given
+        Graph<String, String> graph = new Graph<>();
+        graph.addEdge(new Edge<>(new Node<>("A"), new Node<>("B"), "edge1"));
+        graph.addEdge(new Edge<>(new Node<>("A"), new Node<>("B"), "edge2"));
+        graph.addEdge(new Edge<>(new Node<>("A"), new Node<>("C"), "edge3"));
+        graph.addEdge(new Edge<>(new Node<>("B"), new Node<>("A"), "edge4"));
+
+        // when
+        graph.removeEdge(new Edge<>(new Node<>("A"), new Node<>("B"), "edge1"));
+
+        // then
+        assertFalse(graph.hasEdge(new Node<>("A"), new Node<>("B")));
+        assertTrue(graph.hasEdge(new Node<>("A"), new Node<>("C")));
+        assertFalse(graph.findFirstCycle().isPresent());
+    }
+
+    @Test
+    @DisplayName("wielokrotne dodawanie i usuwanie krawędzi zachowuje graf spójnym")
+    void repeatedChurnKeepsGraphConsistent() {
+        // given
+        Graph<String, String> graph = new Graph<>();
+        for (int i = 0; i < 10_000; i++) {
+            graph.addEdge(new Edge<>(new Node<>("Hub"), new Node<>("User" + i), "out" + i));
+        }
+
+        // when
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 10_000; i++) {
+                graph.removeEdge(new Edge<>(new Node<>("Hub"), new Node<>("User" + i), null));
+                graph.addEdge(new Edge<>(new Node<>("Hub"), new Node<>("User" + i), "out" + i));
+            }
+        }
+        graph.addEdge(new Edge<>(new Node<>("User7"), new Node<>("Hub"), "back"));
+
+        // then
+        assertEquals(10_000, graph.freeze().edgeCount() - 1);
+        assertEquals(2, graph.findFirstCycle().orElseThrow().edges().size());
+    }
+}
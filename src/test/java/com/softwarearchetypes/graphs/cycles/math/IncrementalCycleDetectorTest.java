@@ -0,0 +1,111 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalCycleDetectorTest {
+
+    @Test
+    @DisplayName("krawędź domykająca cykl zwraca cykl i nie jest dodawana")
+    void edgeClosingCycleReturnsCycleAndIsNotInserted() {
+        // given
+        IncrementalCycleDetector<String, String> graph = new IncrementalCycleDetector<>();
+        assertTrue(graph.addEdge("A", "B", "edge1").isEmpty());
+        assertTrue(graph.addEdge("B", "C", "edge2").isEmpty());
+
+        // when
+        Optional<Path<String, String>> cycle = graph.addEdge("C", "A", "edge3");
+
+        // then
+        assertTrue(cycle.isPresent());
+        assertEquals(List.of("edge1", "edge2", "edge3"), cycle.get().edges().stream().map(Edge::property).toList());
+        assertEquals(2, graph.edgeCount());
+        assertFalse(graph.hasEdge(new Node<>("C"), new Node<>("A")));
+    }
+
+    @Test
+    @DisplayName("porządek topologiczny jest utrzymywany przy wstawianiu wstecznych krawędzi")
+    void topologicalOrderIsMaintainedWhenInsertingBackwardEdges() {
+        // given
+        IncrementalCycleDetector<String, String> graph = new IncrementalCycleDetector<>();
+        graph.addEdge("C", "D", "edge1");
+        graph.addEdge("A", "B", "edge2");
+
+        // when
+        Optional<Path<String, String>> cycle = graph.addEdge("D", "A", "edge3");
+
+        // then
+        assertTrue(cycle.isEmpty());
+        assertTrue(graph.isTopologicallyOrdered());
+        assertTrue(graph.addEdge("B", "C", "edge4").isPresent());
+    }
+
+    @Test
+    @DisplayName("usunięcie krawędzi pozwala dodać krawędź przeciwną bez cyklu")
+    void removedEdgeNoLongerClosesCycle() {
+        // given
+        IncrementalCycleDetector<String, String> graph = new IncrementalCycleDetector<>();
+        graph.addEdge("A", "B", "edge1");
+
+        // when
+        boolean removed = graph.removeEdge("A", "B", "edge1");
+
+        // then
+        assertTrue(removed);
+        assertTrue(graph.addEdge("B", "A", "edge2").isEmpty());
+    }
+
+    @Test
+    @DisplayName("losowe wstawienia zachowują porządek i każdy zwrócony cykl jest domknięty")
+    void randomInsertionsKeepOrderAndReturnClosedCycles() {
+        // given
+        IncrementalCycleDetector<Integer, Integer> graph = new IncrementalCycleDetector<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2_000; i++) {
+            // when
+            Optional<Path<Integer, Integer>> cycle = graph.addEdge(random.nextInt(300), random.nextInt(300), i);
+
+            // then
+            cycle.ifPresent(path -> {
+                List<Edge<Integer, Integer>> edges = path.edges();
+                assertEquals(edges.get(0).from(), edges.get(edges.size() - 1).to());
+                for (int e = 1; e < edges.size(); e++) {
+                    assertEquals(edges.get(e - 1).to(), edges.get(e).from());
+                }
+            });
+        }
+        assertTrue(graph.isTopologicallyOrdered());
+    }
+
+
+    @Test
+    @DisplayName("węzeł bez krawędzi znika z grafu, a nowe węzły zajmują jego miejsce")
+    void nodeWithoutEdgesIsDroppedAndItsPlaceIsReused() {
+        // given
+        IncrementalCycleDetector<Integer, Integer> graph = new IncrementalCycleDetector<>();
+
+        // when
+        for (int i = 0; i < 5_000; i++) {
+            // krawędzie wstecz wymuszają przestawianie porządku na węzłach z odzyskanymi id
+            graph.addEdge(i + 1, i, i);
+            graph.addEdge(i + 1, i - i % 5, -i - 1);
+            graph.removeEdge(i - 9, i - 10, i - 10);
+            graph.removeEdge(i - 9, i - 10 - (i - 10) % 5, -(i - 10) - 1);
+            assertTrue(graph.isTopologicallyOrdered());
+        }
+
+        // then
+        assertTrue(graph.nodeCount() <= 20);
+        assertTrue(graph.addEdge(4_990, 4_999, 0).isPresent());
+        assertTrue(graph.addEdge(4_999, 4_999, 0).isPresent());
+        assertTrue(graph.addEdge(-1, -1, 0).isPresent());
+        assertFalse(graph.hasEdge(new Node<>(-1), new Node<>(-1)));
+    }
+}
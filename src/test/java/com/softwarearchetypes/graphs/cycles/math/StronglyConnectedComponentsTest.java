@@ -0,0 +1,68 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StronglyConnectedComponentsTest {
+
+    @Test
+    @DisplayName("graf rozkłada się na silnie spójne składowe")
+    void graphIsSplitIntoStronglyConnectedComponents() {
+        // given
+        Graph<String, String> graph = new Graph<>();
+        graph.addEdge(new Edge<>(new Node<>("A"), new Node<>("B"), "edge1"));
+        graph.addEdge(new Edge<>(new Node<>("B"), new Node<>("A"), "edge2"));
+        graph.addEdge(new Edge<>(new Node<>("B"), new Node<>("C"), "edge3"));
+        graph.addEdge(new Edge<>(new Node<>("C"), new Node<>("D"), "edge4"));
+        graph.addEdge(new Edge<>(new Node<>("D"), new Node<>("E"), "edge5"));
+        graph.addEdge(new Edge<>(new Node<>("E"), new Node<>("C"), "edge6"));
+
+        // when
+        List<Set<Node<String>>> components = graph.stronglyConnectedComponents();
+
+        // then
+        assertEquals(2, components.size());
+        assertTrue(components.contains(Set.of(new Node<>("A"), new Node<>("B"))));
+        assertTrue(components.contains(Set.of(new Node<>("C"), new Node<>("D"), new Node<>("E"))));
+    }
+
+    @Test
+    @DisplayName("cykl jest znajdowany w bardzo długim łańcuchu bez przepełnienia stosu")
+    void findsCycleInVeryLongChainWithoutStackOverflow() {
+        // given
+        int length = 200_000;
+        FrozenGraph.Builder<Integer, String> builder = FrozenGraph.builder(length);
+        for (int i = 0; i < length; i++) {
+            builder.addEdge(i, (i + 1) % length, "edge" + i);
+        }
+        FrozenGraph<Integer, String> graph = builder.build();
+
+        // when
+        Optional<Path<Integer, String>> cycle = graph.findFirstCycle();
+
+        // then
+        assertTrue(cycle.isPresent());
+        assertEquals(length, cycle.get().edges().size());
+        assertEquals(1, graph.stronglyConnectedComponents().size());
+    }
+
+    @Test
+    @DisplayName("graf acykliczny nie ma cyklu i każdy węzeł jest osobną składową")
+    void acyclicGraphHasNoCycle() {
+        // given
+        Graph<String, String> graph = new Graph<>();
+        graph.addEdge(new Edge<>(new Node<>("A"), new Node<>("B"), "edge1"));
+        graph.addEdge(new Edge<>(new Node<>("B"), new Node<>("C"), "edge2"));
+        graph.addEdge(new Edge<>(new Node<>("A"), new Node<>("C"), "edge3"));
+
+        // then
+        assertFalse(graph.findFirstCycle().isPresent());
+        assertEquals(3, graph.stronglyConnectedComponents().size());
+    }
+}
@@ -0,0 +1,76 @@
+package com.softwarearchetypes.graphs.cycles.math;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopTradingCyclesTest {
+
+    @Test
+    @DisplayName("każdy dostaje najlepszy obiekt, jaki zostaje po wcześniejszych cyklach")
+    void everyoneGetsBestObjectLeftAfterEarlierCycles() {
+        // given
+        TopTradingCycles<String, String> market = new TopTradingCycles<String, String>()
+                .addAgent("A", "a", List.of("C", "B"))
+                .addAgent("B", "b", List.of("A", "C"))
+                .addAgent("C", "c", List.of("A", "B"))
+                .addAgent("D", "d", List.of("C"));
+
+        // when
+        List<Path<String, String>> cycles = market.clear();
+
+        // then
+        // A i C wymieniają się pierwsze, B chciałby A, ale ten już zniknął z rynku, D zostaje ze swoim
+        assertEquals(1, cycles.size());
+        assertEquals(Map.of("A", "C", "C", "A"), assignments(cycles));
+    }
+
+    @Test
+    @DisplayName("obiekty poniżej własnego nie biorą udziału w wymianie")
+    void objectsRankedBelowOwnAreNotTraded() {
+        // given
+        TopTradingCycles<String, String> market = new TopTradingCycles<String, String>()
+                .addAgent("A", "a", List.of("A", "B"))
+                .addAgent("B", "b", List.of("A"))
+                .addAgent("C", "c", List.of("X", "D"))
+                .addAgent("D", "d", List.of("C"));
+
+        // when
+        List<Path<String, String>> cycles = market.clear();
+
+        // then
+        assertEquals(Map.of("C", "D", "D", "C"), assignments(cycles));
+        assertEquals("c", cycles.get(0).edges().stream()
+                .filter(edge -> edge.from().property().equals("C"))
+                .findFirst().orElseThrow().property());
+    }
+
+    @Test
+    @DisplayName("długi łańcuch wskazań zamyka się w jednym przejściu")
+    void longPointerChainClosesInOnePass() {
+        // given
+        int agents = 100_000;
+        TopTradingCycles<Integer, Integer> market = new TopTradingCycles<>();
+        for (int agent = 0; agent < agents; agent++) {
+            market.addAgent(agent, agent, List.of((agent + 1) % agents));
+        }
+
+        // when
+        List<Path<Integer, Integer>> cycles = market.clear();
+
+        // then
+        assertEquals(1, cycles.size());
+        assertEquals(agents, cycles.get(0).edges().size());
+    }
+
+    private static <P> Map<String, String> assignments(List<Path<String, P>> cycles) {
+        return cycles.stream()
+                .flatMap(cycle -> cycle.edges().stream())
+                .collect(Collectors.toMap(edge -> edge.from().property(), edge -> edge.to().property()));
+    }
+}
@@ -2,6 +2,8 @@ package com.softwarearchetypes.graphs.influence;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static com.softwarearchetypes.graphs.influence.Fixtures.*;
@@ -162,4 +164,126 @@ class InfluenceAnalyzerTest {
         assertEquals(0, independentZone.countReservationsToNegotiateWith(newReservation));
         assertEquals(1, independentZone.size());
     }
+
+    @Test
+    void sameReservationSetIsAnalysedOnlyOnce() {
+        // given
+        PhysicsInfluence physics = PhysicsInfluence.builder()
+                .addInfluence(THERMAL, CONDUCTIVITY)
+                .build();
+
+        InfluenceMap influenceMap = InfluenceMap.builder()
+                .withPhysics(physics)
+                .withInfrastructure(emptyInfrastructure())
+                .withLaboratories(Set.of(LAB_A, LAB_B))
+                .build();
+
+        Reservation thermal = new Reservation(THERMAL, LAB_A);
+        Reservation conductivity = new Reservation(CONDUCTIVITY, LAB_B);
+        Reservation spectroscopy = new Reservation(SPECTROSCOPY, LAB_A);
+        InfluanceAnalyzer analyzer = new InfluanceAnalyzer(influenceMap);
+
+        // when
+        InfluenceAnalysis first = analyzer.analyze(Set.of(thermal, conductivity, spectroscopy));
+        InfluenceAnalysis second = analyzer.analyze(new HashSet<>(List.of(spectroscopy, conductivity, thermal)));
+
+        // then
+        assertSame(first, second);
+        assertSame(first.zoneOf(thermal), first.zoneOf(conductivity));
+        assertEquals(1, first.zoneOf(spectroscopy).size());
+        assertEquals(2, first.zones().size());
+    }
+
+    @Test
+    void changingAnalysedMutableSetGivesFreshAnalysis() {
+        // given
+        PhysicsInfluence physics = PhysicsInfluence.builder()
+                .addInfluence(THERMAL, CONDUCTIVITY)
+                .build();
+
+        InfluenceMap influenceMap = InfluenceMap.builder()
+                .withPhysics(physics)
+                .withInfrastructure(emptyInfrastructure())
+                .withLaboratories(Set.of(LAB_A, LAB_B))
+                .build();
+
+        Reservation thermal = new Reservation(THERMAL, LAB_A);
+        Reservation conductivity = new Reservation(CONDUCTIVITY, LAB_B);
+        Set<Reservation> reservations = new HashSet<>(List.of(thermal));
+        InfluanceAnalyzer analyzer = new InfluanceAnalyzer(influenceMap);
+        InfluenceAnalysis before = analyzer.analyze(reservations);
+
+        // when
+        reservations.add(conductivity);
+        InfluenceAnalysis after = analyzer.analyze(reservations);
+
+        // then
+        assertNotSame(before, after);
+        assertEquals(1, before.zoneOf(thermal).size());
+        assertEquals(2, after.zoneOf(thermal).size());
+        assertSame(after, analyzer.analyze(Set.of(thermal, conductivity)));
+    }
+
+    @Test
+    void leastRecentlyUsedAnalysisIsEvictedWhenCacheIsFull() {
+        // given
+        PhysicsInfluence physics = PhysicsInfluence.builder()
+                .addInfluence(THERMAL, CONDUCTIVITY)
+                .build();
+
+        InfluenceMap influenceMap = InfluenceMap.builder()
+                .withPhysics(physics)
+                .withInfrastructure(emptyInfrastructure())
+                .withLaboratories(Set.of(LAB_A, LAB_B))
+                .build();
+
+        Set<Reservation> labA = Set.of(new Reservation(THERMAL, LAB_A), new Reservation(CONDUCTIVITY, LAB_A));
+        Set<Reservation> labB = Set.of(new Reservation(THERMAL, LAB_B), new Reservation(CONDUCTIVITY, LAB_B));
+        // każda analiza waży 3: dwie rezerwacje i jedna krawędź
+        InfluanceAnalyzer analyzer = new InfluanceAnalyzer(influenceMap, 5);
+
+        // when
+        InfluenceAnalysis labAAnalysis = analyzer.analyze(labA);
+        InfluenceAnalysis labBAnalysis = analyzer.analyze(labB);
+
+        // then
+        assertSame(labBAnalysis, analyzer.analyze(labB));
+        assertNotSame(labAAnalysis, analyzer.analyze(labA));
+    }
+
+    @Test
+    void conflictsCountedOnReservedUnitsBitset() {
+        // given
+        PhysicsInfluence physics = PhysicsInfluence.builder()
+                .addInfluence(THERMAL, CONDUCTIVITY)
+                .addInfluence(THERMAL, SPECTROSCOPY)
+                .build();
+
+        InfluenceMap influenceMap = InfluenceMap.builder()
+                .withPhysics(physics)
+                .withInfrastructure(emptyInfrastructure())
+                .withLaboratories(Set.of(LAB_A, LAB_B, LAB_C))
+                .bitsets()
+                .build();
+
+        Reservation existing1 = new Reservation(CONDUCTIVITY, LAB_B);
+        Reservation existing2 = new Reservation(SPECTROSCOPY, LAB_C);
+        Reservation unrelated = new Reservation(THERMAL, LAB_C);
+        ReservedUnits existing = influenceMap.reservedUnits();
+        existing.add(existing1);
+        existing.add(existing2);
+        existing.add(unrelated);
+
+        // when
+        InfluanceAnalyzer analyzer = new InfluanceAnalyzer(influenceMap);
+        int conflicts = analyzer.countConflicts(new Reservation(THERMAL, LAB_A), existing);
+        existing.remove(existing2);
+        int conflictsAfterCancellation = analyzer.countConflicts(new Reservation(THERMAL, LAB_A), existing);
+
+        // then
+        assertEquals(2, conflicts);
+        assertEquals(1, conflictsAfterCancellation);
+        assertEquals(0, analyzer.countConflicts(new Reservation(CONDUCTIVITY, LAB_A), existing));
+        assertEquals(2, existing.size());
+    }
 }
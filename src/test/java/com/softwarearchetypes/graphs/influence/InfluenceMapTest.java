@@ -6,6 +6,9 @@ import java.util.Set;
 
 import static com.softwarearchetypes.graphs.influence.Fixtures.*;
 import static com.softwarearchetypes.graphs.influence.InfluenceMapAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class InfluenceMapTest {
 
@@ -104,4 +107,70 @@ class InfluenceMapTest {
                 .hasEdge(THERMAL, LAB_B, CONDUCTIVITY, LAB_C)
                 .hasEdgeCount(2);
     }
+
+    @Test
+    void shouldListUnitsInfluencedByGivenUnit() {
+        // given
+        PhysicsInfluence physics = PhysicsInfluence.builder()
+                .addInfluence(THERMAL, CONDUCTIVITY)
+                .build();
+
+        // and
+        InfrastructureInfluence infrastructureInfluence = InfrastructureInfluence.builder()
+                .addConstraint(THERMAL, LAB_A, SPECTROSCOPY, LAB_C)
+                .build();
+
+        // when
+        InfluenceMap influence = InfluenceMap.builder()
+                .withPhysics(physics)
+                .withInfrastructure(infrastructureInfluence)
+                .withLaboratories(Set.of(LAB_A, LAB_B))
+                .build();
+
+        // then
+        assertEquals(Set.of(
+                        new InfluenceUnit(CONDUCTIVITY, LAB_A),
+                        new InfluenceUnit(CONDUCTIVITY, LAB_B),
+                        new InfluenceUnit(SPECTROSCOPY, LAB_C)),
+                influence.successorsOf(new InfluenceUnit(THERMAL, LAB_A)));
+        assertEquals(Set.of(), influence.successorsOf(new InfluenceUnit(CONDUCTIVITY, LAB_A)));
+        assertEquals(Set.of(), influence.successorsOf(new InfluenceUnit(SPECTROSCOPY, LAB_B)));
+    }
+
+    @Test
+    void implicitMapAnswersWithoutExpandingCartesianProduct() {
+        // given
+        PhysicsInfluence physics = PhysicsInfluence.builder()
+                .addInfluence(THERMAL, CONDUCTIVITY)
+                .build();
+
+        // and
+        InfrastructureInfluence infrastructureInfluence = InfrastructureInfluence.builder()
+                .addConstraint(SPECTROSCOPY, LAB_A, THERMAL, LAB_B)
+                .build();
+
+        // when
+        InfluenceMap influence = InfluenceMap.builder()
+                .withPhysics(physics)
+                .withInfrastructure(infrastructureInfluence)
+                .withLaboratories(Set.of(LAB_A, LAB_B))
+                .implicit()
+                .build();
+
+        // then
+        assertTrue(influence.influences(THERMAL, LAB_A, CONDUCTIVITY, LAB_B));
+        assertTrue(influence.influences(SPECTROSCOPY, LAB_A, THERMAL, LAB_B));
+        assertFalse(influence.influences(THERMAL, LAB_A, CONDUCTIVITY, LAB_C));
+        assertFalse(influence.influences(CONDUCTIVITY, LAB_A, THERMAL, LAB_A));
+        assertEquals(Set.of(new InfluenceUnit(THERMAL, LAB_A), new InfluenceUnit(THERMAL, LAB_B)),
+                influence.predecessorsOf(new InfluenceUnit(CONDUCTIVITY, LAB_B)));
+        assertEquals(Set.of(new InfluenceUnit(SPECTROSCOPY, LAB_A)),
+                influence.predecessorsOf(new InfluenceUnit(THERMAL, LAB_B)));
+
+        // and
+        assertThat(influence)
+                .hasEdge(THERMAL, LAB_B, CONDUCTIVITY, LAB_A)
+                .hasEdge(SPECTROSCOPY, LAB_A, THERMAL, LAB_B)
+                .hasEdgeCount(5);
+    }
 }
@@ -0,0 +1,79 @@
+package com.softwarearchetypes.graphs.influence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static com.softwarearchetypes.graphs.influence.Fixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InfluenceZoneTrackerTest {
+
+    PhysicsProcess processA = new PhysicsProcess("A");
+    PhysicsProcess processB = new PhysicsProcess("B");
+    PhysicsProcess processX = new PhysicsProcess("X");
+    PhysicsProcess processC = new PhysicsProcess("C");
+    PhysicsProcess processD = new PhysicsProcess("D");
+
+    InfluenceMap influenceMap = InfluenceMap.builder()
+            .withPhysics(PhysicsInfluence.builder()
+                    .addInfluence(processA, processB)
+                    .addInfluence(processB, processX)
+                    .addInfluence(processX, processC)
+                    .addInfluence(processC, processD)
+                    .build())
+            .withInfrastructure(emptyInfrastructure())
+            .withLaboratories(Set.of(LAB_A))
+            .build();
+
+    Reservation reservationA = new Reservation(processA, LAB_A);
+    Reservation reservationB = new Reservation(processB, LAB_A);
+    Reservation reservationX = new Reservation(processX, LAB_A);
+    Reservation reservationC = new Reservation(processC, LAB_A);
+    Reservation reservationD = new Reservation(processD, LAB_A);
+
+    @Test
+    void arrivingReservationMergesTwoZones() {
+        // given
+        InfluenceZoneTracker tracker = new InfluenceZoneTracker(influenceMap);
+        tracker.add(reservationA);
+        tracker.add(reservationB);
+        tracker.add(reservationC);
+        tracker.add(reservationD);
+
+        // when
+        Set<InfluenceZone> zonesBefore = tracker.zones();
+        boolean added = tracker.add(reservationX);
+
+        // then
+        InfluenceZone merged = tracker.zoneOf(reservationX);
+        assertTrue(added);
+        assertFalse(tracker.add(reservationX));
+        assertEquals(2, zonesBefore.size());
+        assertEquals(5, merged.size());
+        assertEquals(Set.of(merged), tracker.zones());
+        assertEquals(merged, tracker.zoneOf(reservationA));
+    }
+
+    @Test
+    void cancellationSplitsOnlyItsOwnZone() {
+        // given
+        Reservation otherLab = new Reservation(processA, LAB_B);
+        InfluenceZoneTracker tracker = new InfluenceZoneTracker(influenceMap);
+        for (Reservation reservation : Set.of(reservationA, reservationB, reservationX, reservationC, reservationD, otherLab)) {
+            tracker.add(reservation);
+        }
+
+        // when
+        boolean cancelled = tracker.cancel(reservationX);
+
+        // then
+        assertTrue(cancelled);
+        assertFalse(tracker.contains(reservationX));
+        assertEquals(Set.of(reservationA, reservationB), tracker.zoneOf(reservationA).reservations());
+        assertEquals(Set.of(reservationC, reservationD), tracker.zoneOf(reservationD).reservations());
+        assertEquals(1, tracker.zoneOf(otherLab).size());
+        assertEquals(3, tracker.zones().size());
+        assertFalse(tracker.cancel(reservationX));
+    }
+}